@@ -1,5 +1,6 @@
 package li.cil.tis3d.api.machine;
 
+import io.netty.buffer.ByteBuf;
 import li.cil.tis3d.api.module.Module;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.BlockPos;
@@ -87,9 +88,43 @@ public interface Casing {
      * That is, when called from the client, it will send the data to the
      * instance representing the module on the specified face on the server,
      * when called on the server it will send the data to the client.
+     * <p>
+     * Data sent on the server while the module is being stepped is sent to
+     * the client at the end of the tick, batched with the data of other
+     * modules. If a module sends data multiple times in a tick, only the
+     * data sent last is sent to the client, so it should always contain
+     * the full state to synchronize.
      *
      * @param face the face the module is installed in.
      * @param data the data to send to the client.
      */
     void sendData(Face face, NBTTagCompound data);
+
+    /**
+     * Call this to send some binary data from a module to it's other
+     * representation. This behaves like {@link #sendData(Face, NBTTagCompound)},
+     * but avoids building NBT tags for data sent frequently.
+     * <p>
+     * The casing takes ownership of the buffer, and releases it once it was
+     * sent, or when it was superseded by data sent later in the same tick,
+     * so do not use it after passing it. To avoid generating garbage, use a
+     * pooled buffer, e.g. from {@link io.netty.buffer.PooledByteBufAllocator#DEFAULT}.
+     * <p>
+     * Casings not supporting binary data send it using {@link #sendData(Face, NBTTagCompound)}
+     * instead, with the bytes stored as a byte array named <tt>data</tt>.
+     *
+     * @param face the face the module is installed in.
+     * @param data the data to send to the client.
+     */
+    default void sendData(final Face face, final ByteBuf data) {
+        try {
+            final byte[] bytes = new byte[data.readableBytes()];
+            data.readBytes(bytes);
+            final NBTTagCompound nbt = new NBTTagCompound();
+            nbt.setByteArray("data", bytes);
+            sendData(face, nbt);
+        } finally {
+            data.release();
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package li.cil.tis3d.api.module;
 
+import io.netty.buffer.ByteBuf;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
@@ -102,6 +103,23 @@ public interface Module {
      */
     void onData(final NBTTagCompound nbt);
 
+    /**
+     * Called with binary data sent from the remote instance of the module.
+     * <p>
+     * This can be called on both the server and the client, depending on which
+     * side sent the message (i.e. the client can send messages to the server
+     * this way and vice versa).
+     * <p>
+     * The buffer is released after this call returns, so do not keep a
+     * reference to it. Does nothing by default, so only modules actually
+     * sending binary data need to implement this.
+     *
+     * @param data the received data.
+     * @see Casing#sendData(Face, ByteBuf)
+     */
+    default void onData(final ByteBuf data) {
+    }
+
     // --------------------------------------------------------------------- //
 
     /**
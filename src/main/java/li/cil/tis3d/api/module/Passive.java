@@ -0,0 +1,16 @@
+package li.cil.tis3d.api.module;
+
+/**
+ * Modules implementing this indicate that they do not need to be updated.
+ * <p>
+ * The controller driving the {@link li.cil.tis3d.api.machine.Casing} the
+ * module is installed in will never call {@link Module#step()} on such
+ * modules. All other callbacks, such as {@link Module#onEnabled()} and
+ * {@link Module#onWriteComplete(li.cil.tis3d.api.machine.Port)}, are still
+ * called as usual.
+ * <p>
+ * Use this for modules that only react to such callbacks, or that do not
+ * interact with their pipes at all, e.g. purely decorative modules.
+ */
+public interface Passive {
+}
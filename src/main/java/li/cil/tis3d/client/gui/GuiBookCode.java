@@ -5,6 +5,7 @@ import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.item.ItemBookCode;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.LineCache;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
 import li.cil.tis3d.common.network.Network;
 import li.cil.tis3d.common.network.message.MessageBookCodeData;
@@ -53,6 +54,7 @@ public class GuiBookCode extends GuiScreen {
     private final EntityPlayer player;
     private final ItemBookCode.Data data;
     private final List<StringBuilder> lines = new ArrayList<>();
+    private final LineCache lineCache = new LineCache();
 
     private int guiX = 0;
     private int guiY = 0;
@@ -428,7 +430,7 @@ public class GuiBookCode extends GuiScreen {
     private void recompile() {
         try {
             compileError = Optional.empty();
-            Compiler.compile(lines.stream().map(StringBuilder::toString).collect(Collectors.toList()), new MachineState());
+            Compiler.compile(lines.stream().map(StringBuilder::toString).collect(Collectors.toList()), new MachineState(), lineCache);
         } catch (final ParseException e) {
             compileError = Optional.of(e);
         }
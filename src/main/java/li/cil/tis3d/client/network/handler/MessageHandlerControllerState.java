@@ -0,0 +1,20 @@
+package li.cil.tis3d.client.network.handler;
+
+import li.cil.tis3d.common.network.handler.AbstractMessageHandlerWithLocation;
+import li.cil.tis3d.common.network.message.MessageControllerState;
+import li.cil.tis3d.common.tile.TileEntityController;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+public final class MessageHandlerControllerState extends AbstractMessageHandlerWithLocation<MessageControllerState> {
+    @Override
+    protected void process(final MessageControllerState message, final MessageContext context) {
+        final TileEntity tileEntity = getTileEntity(message, context);
+        if (!(tileEntity instanceof TileEntityController)) {
+            return;
+        }
+
+        final TileEntityController controller = (TileEntityController) tileEntity;
+        controller.setThrottled(message.isThrottled());
+    }
+}
@@ -0,0 +1,27 @@
+package li.cil.tis3d.client.network.handler;
+
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.module.ModuleExecution;
+import li.cil.tis3d.common.network.handler.AbstractMessageHandlerWithLocation;
+import li.cil.tis3d.common.network.message.MessageExecutionState;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+public final class MessageHandlerExecutionState extends AbstractMessageHandlerWithLocation<MessageExecutionState> {
+    @Override
+    protected void process(final MessageExecutionState message, final MessageContext context) {
+        final TileEntity tileEntity = getTileEntity(message, context);
+        if (!(tileEntity instanceof TileEntityCasing)) {
+            return;
+        }
+
+        final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+        final Module module = casing.getModule(message.getFace());
+        if (!(module instanceof ModuleExecution)) {
+            return;
+        }
+
+        ((ModuleExecution) module).onState(message);
+    }
+}
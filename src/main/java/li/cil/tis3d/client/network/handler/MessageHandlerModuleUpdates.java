@@ -0,0 +1,68 @@
+package li.cil.tis3d.client.network.handler;
+
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.module.ModuleExecution;
+import li.cil.tis3d.common.network.handler.AbstractMessageHandlerWithDimension;
+import li.cil.tis3d.common.network.message.AbstractModuleMessage;
+import li.cil.tis3d.common.network.message.MessageExecutionState;
+import li.cil.tis3d.common.network.message.MessageModuleByteData;
+import li.cil.tis3d.common.network.message.MessageModuleData;
+import li.cil.tis3d.common.network.message.MessageModuleUpdates;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.List;
+
+public final class MessageHandlerModuleUpdates extends AbstractMessageHandlerWithDimension<MessageModuleUpdates> {
+    @Override
+    protected void process(final MessageModuleUpdates message, final MessageContext context) {
+        try {
+            apply(message, context);
+        } finally {
+            message.release();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private void apply(final MessageModuleUpdates message, final MessageContext context) {
+        final World world = getWorld(message, context);
+        if (world == null) {
+            return;
+        }
+
+        final List<BlockPos> positions = message.getPositions();
+        final List<List<AbstractModuleMessage>> updates = message.getUpdates();
+        for (int index = 0; index < positions.size(); index++) {
+            final BlockPos position = positions.get(index);
+            if (!world.isBlockLoaded(position)) {
+                continue;
+            }
+            final TileEntity tileEntity = world.getTileEntity(position);
+            if (!(tileEntity instanceof TileEntityCasing)) {
+                continue;
+            }
+
+            final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+            for (final AbstractModuleMessage update : updates.get(index)) {
+                final Module module = casing.getModule(update.getFace());
+                if (update instanceof MessageModuleData) {
+                    if (module != null) {
+                        module.onData(((MessageModuleData) update).getNbt());
+                    }
+                } else if (update instanceof MessageModuleByteData) {
+                    if (module != null) {
+                        module.onData(((MessageModuleByteData) update).getData());
+                    }
+                } else if (update instanceof MessageExecutionState) {
+                    if (module instanceof ModuleExecution) {
+                        ((ModuleExecution) module).onState((MessageExecutionState) update);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package li.cil.tis3d.client.network.handler;
+
+import li.cil.tis3d.common.machine.CasingImpl;
+import li.cil.tis3d.common.network.handler.AbstractMessageHandlerWithDimension;
+import li.cil.tis3d.common.network.message.MessagePipeTransfers;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumParticleTypes;
+import net.minecraft.util.Vec3;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+import java.util.List;
+
+public final class MessageHandlerPipeTransfers extends AbstractMessageHandlerWithDimension<MessagePipeTransfers> {
+    @Override
+    protected void process(final MessagePipeTransfers message, final MessageContext context) {
+        final World world = getWorld(message, context);
+        if (world == null) {
+            return;
+        }
+
+        final List<BlockPos> positions = message.getPositions();
+        final List<int[]> transfers = message.getTransfers();
+        for (int casing = 0; casing < positions.size(); casing++) {
+            final BlockPos position = positions.get(casing);
+            final int[] counts = transfers.get(casing);
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] == 0) {
+                    continue;
+                }
+
+                // One particle per read, like when each transfer was sent.
+                final Vec3 point = CasingImpl.getPipeTransferPosition(position, index);
+                for (int count = 0; count < counts[index]; count++) {
+                    world.spawnParticle(EnumParticleTypes.REDSTONE, point.xCoord, point.yCoord, point.zCoord, 0, 0, 0);
+                }
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ import li.cil.tis3d.common.api.ModuleAPIImpl;
 import li.cil.tis3d.common.block.BlockCasing;
 import li.cil.tis3d.common.block.BlockController;
 import li.cil.tis3d.common.entity.EntityInfraredPacket;
+import li.cil.tis3d.common.event.TickHandlerControllers;
 import li.cil.tis3d.common.event.TickHandlerInfraredPacket;
 import li.cil.tis3d.common.item.ItemBookCode;
 import li.cil.tis3d.common.item.ItemBookManual;
@@ -169,6 +170,7 @@ public class ProxyCommon {
         Network.INSTANCE.init();
 
         // Register event handlers.
+        MinecraftForge.EVENT_BUS.register(TickHandlerControllers.INSTANCE);
         MinecraftForge.EVENT_BUS.register(TickHandlerInfraredPacket.INSTANCE);
 
         // Register providers for built-in modules.
@@ -13,6 +13,35 @@ public final class Settings {
      */
     public static int maxCasingsPerController = 8;
 
+    /**
+     * Whether to connect pipes of adjacent casings directly, instead of
+     * relaying data between them using forwarder modules.
+     */
+    public static boolean linkCasingPipes = false;
+
+    /**
+     * Whether to step independent controllers in parallel on worker threads.
+     */
+    public static boolean parallelControllers = false;
+
+    /**
+     * The number of modules a controller must step before stepping groups of
+     * modules not connected to each other in parallel. Zero disables this.
+     */
+    public static int parallelModuleThreshold = 0;
+
+    /**
+     * The time all controllers together may spend stepping per tick, in
+     * milliseconds. Zero disables the limit.
+     */
+    public static float controllerBudget = 0;
+
+    /**
+     * How many times as often to step machines made up only of modules not
+     * interacting with the world, when running faster than normal speed.
+     */
+    public static int turboMultiplier = 1;
+
     /**
      * The maximum number of lines a piece of code may have.
      */
@@ -23,6 +52,24 @@ public final class Settings {
      */
     public static int maxColumnsPerLine = 18;
 
+    /**
+     * Whether to run execution modules using the pre-decoded opcode interpreter
+     * instead of stepping the compiled instruction objects.
+     */
+    public static boolean useOpcodeInterpreter = true;
+
+    /**
+     * The number of steps a program has to be run by the opcode interpreter
+     * before it is compiled to JVM bytecode. Zero disables compilation.
+     */
+    public static int opcodeCompilerThreshold = 1000;
+
+    /**
+     * The maximum number of steps of a loop only operating on registers that
+     * the opcode interpreter computes in advance. Zero disables this.
+     */
+    public static int maxFastForwardSteps = 200;
+
     /**
      * Maximum number of items stored in our receiver queue.
      * <p>
@@ -38,8 +85,23 @@ public final class Settings {
         config.load();
 
         maxCasingsPerController = config.getInt("maxCasings", "controller",
-                Settings.maxCasingsPerController, 1, 512,
+                Settings.maxCasingsPerController, 1, 16384,
                 "The maximum number of casings a single controller supports.");
+        linkCasingPipes = config.getBoolean("linkCasingPipes", "controller",
+                Settings.linkCasingPipes,
+                "Whether to connect modules across adjacent casings directly. This is faster for large multi-blocks, but data no longer takes extra steps to cross from one casing into the next.");
+        parallelControllers = config.getBoolean("parallelControllers", "controller",
+                Settings.parallelControllers,
+                "Whether to step different controllers in parallel, using multiple threads. Helps when running many multi-blocks, but redstone signals passed between different multi-blocks may be picked up a step earlier or later than usual.");
+        parallelModuleThreshold = config.getInt("parallelModuleThreshold", "controller",
+                Settings.parallelModuleThreshold, 0, Integer.MAX_VALUE,
+                "The number of modules a single controller must have before modules not connected to each other are stepped in parallel, using multiple threads. Results are the same as when stepping them one after the other. Set to zero to disable.");
+        controllerBudget = config.getFloat("controllerBudget", "controller",
+                Settings.controllerBudget, 0, 50,
+                "The time in milliseconds all controllers together may spend per tick. When exceeded, controllers are slowed down evenly and show smoke. Set to zero to disable.");
+        turboMultiplier = config.getInt("turboMultiplier", "controller",
+                Settings.turboMultiplier, 1, 200,
+                "How many times as often to step machines running faster than normal speed, if they consist only of modules not interacting with the world (execution, stack). Their state is only sent to players once per tick. Set to one to disable.");
 
         maxLinesPerProgram = config.getInt("maxLinesPerProgram", "module.execution",
                 Settings.maxLinesPerProgram, 1, 200,
@@ -47,6 +109,15 @@ public final class Settings {
         maxColumnsPerLine = config.getInt("maxColumnsPerLine", "module.execution",
                 Settings.maxColumnsPerLine, 1, 80,
                 "The maximum number of columns per line of an ASM program for an execution node may have.");
+        useOpcodeInterpreter = config.getBoolean("useOpcodeInterpreter", "module.execution",
+                Settings.useOpcodeInterpreter,
+                "Whether to run ASM programs using the pre-decoded opcode interpreter. Behaves identically, but is faster.");
+        opcodeCompilerThreshold = config.getInt("opcodeCompilerThreshold", "module.execution",
+                Settings.opcodeCompilerThreshold, 0, Integer.MAX_VALUE,
+                "The number of steps after which ASM programs run by the opcode interpreter are compiled to Java bytecode. Set to zero to disable (e.g. for debugging).");
+        maxFastForwardSteps = config.getInt("maxFastForwardSteps", "module.execution",
+                Settings.maxFastForwardSteps, 0, 10000,
+                "The maximum number of steps of register-only loops (e.g. delays, counters) the opcode interpreter computes in one go. The machine state is shown to players once per tick during such a run, instead of after every step. Set to zero to disable.");
         maxInfraredQueueLength = config.getInt("maxQueueLength", "module.infrared",
                 Settings.maxInfraredQueueLength, 1, 64,
                 "The maximum number of infrared packets that can be stored in the receiver's buffer.");
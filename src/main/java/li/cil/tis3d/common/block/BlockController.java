@@ -14,9 +14,14 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumFacing;
+import net.minecraft.util.EnumParticleTypes;
 import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 import net.minecraftforge.fml.common.registry.GameRegistry;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+import java.util.Random;
 
 /**
  * Block for the controller driving the casings.
@@ -51,6 +56,19 @@ public final class BlockController extends Block {
         return new TileEntityController();
     }
 
+    @SideOnly(Side.CLIENT)
+    @Override
+    public void randomDisplayTick(final World world, final BlockPos pos, final IBlockState state, final Random rand) {
+        // Let players know the controller is slowed down due to server load.
+        final TileEntity tileEntity = world.getTileEntity(pos);
+        if (tileEntity instanceof TileEntityController && ((TileEntityController) tileEntity).isThrottled()) {
+            final double x = pos.getX() + 0.25 + rand.nextDouble() * 0.5;
+            final double y = pos.getY() + 1.0;
+            final double z = pos.getZ() + 0.25 + rand.nextDouble() * 0.5;
+            world.spawnParticle(EnumParticleTypes.SMOKE_NORMAL, x, y, z, 0, 0, 0);
+        }
+    }
+
     @Override
     public boolean onBlockActivated(final World world, final BlockPos pos, final IBlockState state, final EntityPlayer player, final EnumFacing side, final float hitX, final float hitY, final float hitZ) {
         final ItemStack stack = player.getHeldItem();
@@ -117,10 +135,10 @@ public final class BlockController extends Block {
                 // our multi-block. Rescan to enter appropriate error state.
                 controller.scheduleScan();
             } else if (neighborTileEntity instanceof TileEntityCasing) {
-                // Rescan if we don't know that casing (yet).
+                // Pick up that casing if we don't know it (yet).
                 final TileEntityCasing casing = (TileEntityCasing) neighborTileEntity;
                 if (casing.getController() != controller) {
-                    controller.scheduleScan();
+                    controller.attachCasings(casing);
                 }
             }
         } else {
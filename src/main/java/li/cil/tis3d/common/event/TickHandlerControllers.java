@@ -0,0 +1,333 @@
+package li.cil.tis3d.common.event;
+
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.tile.TileEntityController;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Steps controllers in parallel, if {@link Settings#parallelControllers} is
+ * enabled, and limits the time spent stepping controllers per tick, if
+ * {@link Settings#controllerBudget} is set.
+ * <p>
+ * Controllers schedule their steps in their update, and are then all stepped
+ * at the end of the tick of their world. Controllers only containing
+ * {@link li.cil.tis3d.common.machine.ConfinedModule}s are stepped on a pool
+ * of worker threads, while the server thread waits for them to finish.
+ * Anything affecting the world during a step is passed to {@link #runOnServerThread(Runnable)},
+ * which buffers it while on a worker thread. Once all of them finished, the
+ * buffered tasks are run on the server thread in the order the controllers
+ * were scheduled in, with all other controllers being stepped in between,
+ * which is the order they would have run in otherwise. As confined modules
+ * are not affected by changes other controllers make to the world while
+ * stepping, stepping them first has no effect on the outcome.
+ * <p>
+ * When the budget for a tick is used up, the remaining steps are deferred to
+ * the following ticks. Steps are handed out one per controller in turns,
+ * starting with a different controller each tick, so that all controllers
+ * are slowed down evenly, regardless of how many steps they request.
+ * <p>
+ * The worker threads are also used to step the modules of large controllers
+ * in parallel, see {@link li.cil.tis3d.common.machine.ParallelSchedule}.
+ */
+public final class TickHandlerControllers {
+    public static final TickHandlerControllers INSTANCE = new TickHandlerControllers();
+
+    // --------------------------------------------------------------------- //
+
+    private final List<TileEntityController> scheduledControllers = new ArrayList<>();
+    private final ThreadLocal<List<Runnable>> pendingTasks = new ThreadLocal<>();
+    private ForkJoinPool pool;
+
+    /**
+     * The time left for stepping controllers in the current tick, in nanoseconds.
+     */
+    private long remainingBudget;
+
+    /**
+     * Offset for handing out steps, rotated each tick for fairness.
+     */
+    private int rotation;
+
+    // --------------------------------------------------------------------- //
+
+    public void scheduleStep(final TileEntityController controller) {
+        scheduledControllers.add(controller);
+    }
+
+    /**
+     * Run a task affecting the world on the server thread.
+     * <p>
+     * When called on the server thread the task is run right away, when called
+     * while stepping a controller on a worker thread it is run after all
+     * controllers finished stepping.
+     *
+     * @param task the task to run.
+     */
+    public void runOnServerThread(final Runnable task) {
+        final List<Runnable> tasks = pendingTasks.get();
+        if (tasks != null) {
+            tasks.add(task);
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Run an action, collecting anything passed to {@link #runOnServerThread(Runnable)}
+     * while it runs into the specified list, instead of running it.
+     *
+     * @param tasks  the list to collect tasks into.
+     * @param action the action to run.
+     */
+    public void collectTasks(final List<Runnable> tasks, final Runnable action) {
+        final List<Runnable> previousTasks = pendingTasks.get();
+        pendingTasks.set(tasks);
+        try {
+            action.run();
+        } finally {
+            if (previousTasks != null) {
+                pendingTasks.set(previousTasks);
+            } else {
+                pendingTasks.remove();
+            }
+        }
+    }
+
+    /**
+     * Run the specified tasks on the worker threads and wait for all of them
+     * to finish. If any of the tasks failed, the first failure is rethrown.
+     *
+     * @param tasks the tasks to run.
+     * @param <T>   the type of the results of the tasks.
+     * @return the results of the tasks, in the order of the tasks.
+     */
+    public <T> List<T> invokeAll(final List<Callable<T>> tasks) {
+        return getResults(getPool().invokeAll(tasks));
+    }
+
+    /**
+     * Run the specified tasks on the worker threads, except for one task that
+     * is run on the calling thread, and wait for all of them to finish. If any
+     * of the tasks failed, the first failure is rethrown.
+     *
+     * @param tasks     the tasks to run.
+     * @param localTask the index of the task to run on the calling thread.
+     * @param <T>       the type of the results of the tasks.
+     * @return the results of the tasks, in the order of the tasks.
+     */
+    public <T> List<T> invokeAll(final List<Callable<T>> tasks, final int localTask) {
+        final List<Future<T>> futures = new ArrayList<>(tasks.size());
+        final FutureTask<T> local = new FutureTask<>(tasks.get(localTask));
+        for (int index = 0; index < tasks.size(); index++) {
+            futures.add(index == localTask ? local : getPool().submit(tasks.get(index)));
+        }
+        local.run();
+        return getResults(futures);
+    }
+
+    /**
+     * Get the number of worker threads tasks are run on.
+     *
+     * @return the number of worker threads.
+     */
+    public int getParallelism() {
+        return getPool().getParallelism();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @SubscribeEvent
+    public void onWorldTick(final TickEvent.WorldTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.world.isRemote) {
+            return;
+        }
+
+        final List<TileEntityController> controllers = new ArrayList<>();
+        final Iterator<TileEntityController> iterator = scheduledControllers.iterator();
+        while (iterator.hasNext()) {
+            final TileEntityController controller = iterator.next();
+            if (controller.getWorld() == event.world) {
+                controllers.add(controller);
+                iterator.remove();
+            }
+        }
+
+        if (controllers.isEmpty()) {
+            return;
+        }
+
+        final int[] grantedSteps = grantSteps(controllers);
+
+        // Not worth the overhead, just step them right here.
+        if (!Settings.parallelControllers || controllers.size() == 1) {
+            for (int index = 0; index < controllers.size(); index++) {
+                remainingBudget -= controllers.get(index).stepScheduled(grantedSteps[index]);
+            }
+            return;
+        }
+
+        // Modules interacting with the world directly, e.g. reading redstone
+        // or using the world's random generator, must be stepped on the
+        // server thread, so only controllers without such modules are
+        // stepped on the workers.
+        final boolean[] isConfined = new boolean[controllers.size()];
+        final List<Callable<List<Runnable>>> steps = new ArrayList<>(controllers.size());
+        for (int index = 0; index < controllers.size(); index++) {
+            final TileEntityController controller = controllers.get(index);
+            if (!controller.isConfined()) {
+                continue;
+            }
+            isConfined[index] = true;
+            final int maxSteps = grantedSteps[index];
+            steps.add(() -> {
+                final List<Runnable> tasks = new ArrayList<>();
+                collectTasks(tasks, () -> {
+                    final long elapsed = controller.stepScheduled(maxSteps);
+                    tasks.add(() -> remainingBudget -= elapsed);
+                });
+                return tasks;
+            });
+        }
+
+        // Wait for all controllers to finish before running any of the tasks
+        // or stepping the other controllers, as workers may still be reading
+        // from the world otherwise.
+        final List<List<Runnable>> results = steps.size() > 1 ? invokeAll(steps) : null;
+        int result = 0;
+        for (int index = 0; index < controllers.size(); index++) {
+            if (results != null && isConfined[index]) {
+                results.get(result++).forEach(Runnable::run);
+            } else {
+                remainingBudget -= controllers.get(index).stepScheduled(grantedSteps[index]);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerTick(final TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            remainingBudget = (long) (Settings.controllerBudget * 1000000);
+            return;
+        }
+
+        // All worlds ticked, anything left belongs to a world that unloaded.
+        scheduledControllers.clear();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Decide how many of their scheduled steps the specified controllers may
+     * perform, based on the time their steps took so far and the budget left.
+     *
+     * @param controllers the controllers to hand out steps to.
+     * @return the number of steps each controller may perform.
+     */
+    private int[] grantSteps(final List<TileEntityController> controllers) {
+        final int count = controllers.size();
+        final int[] scheduledSteps = new int[count];
+        final long[] stepTimes = new long[count];
+        for (int index = 0; index < count; index++) {
+            scheduledSteps[index] = controllers.get(index).getScheduledSteps();
+            stepTimes[index] = controllers.get(index).getAverageStepTime();
+        }
+        return grantSteps(scheduledSteps, stepTimes, remainingBudget, rotation++);
+    }
+
+    /**
+     * Decide how many of their scheduled steps controllers may perform.
+     * <p>
+     * Steps are handed out one per controller in turns, starting with the
+     * controller at the specified offset, until the budget is used up.
+     *
+     * @param scheduledSteps the number of steps each controller scheduled.
+     * @param stepTimes      the average time per step of each controller, in nanoseconds.
+     * @param budget         the time available for stepping, in nanoseconds.
+     * @param offset         the index of the controller to start with, wrapped around.
+     * @return the number of steps each controller may perform.
+     */
+    static int[] grantSteps(final int[] scheduledSteps, final long[] stepTimes, final long budget, final int offset) {
+        final int count = scheduledSteps.length;
+        if (Settings.controllerBudget <= 0) {
+            return scheduledSteps.clone();
+        }
+
+        // Hand out one step per controller in turns, until the budget is used
+        // up. This may overshoot by one step, but guarantees progress even if
+        // a single step takes longer than the whole budget.
+        final int[] grantedSteps = new int[count];
+        final int start = Math.floorMod(offset, count);
+        long remaining = budget;
+        boolean granted = true;
+        while (remaining > 0 && granted) {
+            granted = false;
+            for (int turn = 0; turn < count && remaining > 0; turn++) {
+                final int index = (start + turn) % count;
+                if (grantedSteps[index] < scheduledSteps[index]) {
+                    grantedSteps[index]++;
+                    remaining -= Math.max(1, stepTimes[index]);
+                    granted = true;
+                }
+            }
+        }
+        return grantedSteps;
+    }
+
+    /**
+     * Wait for the specified futures to complete and collect their results.
+     * If any of them failed, the first failure is rethrown once all of them
+     * completed.
+     *
+     * @param futures the futures to collect the results of.
+     * @param <T>     the type of the results.
+     * @return the results, in the order of the futures.
+     */
+    private static <T> List<T> getResults(final List<Future<T>> futures) {
+        final List<T> results = new ArrayList<>(futures.size());
+        ExecutionException failure = null;
+        try {
+            for (final Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers.", e);
+        }
+        if (failure != null) {
+            if (failure.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) failure.getCause();
+            }
+            if (failure.getCause() instanceof Error) {
+                throw (Error) failure.getCause();
+            }
+            throw new IllegalStateException(failure.getCause());
+        }
+        return results;
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    private TickHandlerControllers() {
+    }
+}
@@ -1,22 +1,32 @@
 package li.cil.tis3d.common.machine;
 
+import io.netty.buffer.ByteBuf;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.api.module.Redstone;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.event.TickHandlerControllers;
 import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.network.message.AbstractModuleMessage;
+import li.cil.tis3d.common.network.message.MessageModuleByteData;
 import li.cil.tis3d.common.network.message.MessageModuleData;
 import li.cil.tis3d.common.tile.TileEntityCasing;
 import li.cil.tis3d.common.tile.TileEntityController;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.Vec3;
 import net.minecraft.world.World;
 import net.minecraftforge.common.util.Constants;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Implementation of a {@link Casing}, holding up to six {@link Module}s.
  */
@@ -36,6 +46,11 @@ public final class CasingImpl implements Casing {
      */
     private final PipeImpl[] pipes = new PipeImpl[24];
 
+    /**
+     * The state of all {@link Pipe}s on this casing, indexed like {@link #pipes}.
+     */
+    private final PipeStates pipeStates = new PipeStates(pipes.length);
+
     // --------------------------------------------------------------------- //
     // Computed data.
 
@@ -74,6 +89,43 @@ public final class CasingImpl implements Casing {
      */
     private final TileEntityCasing tileEntity;
 
+    /**
+     * The pipes modules in this casing are connected to, indexed like {@link #pipes}.
+     * <p>
+     * These are our own pipes, unless pipes have been linked across casings
+     * using {@link #linkPipes()}. In that case the pipes from and to faces
+     * adjacent to other casings are replaced with pipes directly connecting
+     * the modules on either end.
+     */
+    private final PipeImpl[] connectedPipes = new PipeImpl[pipes.length];
+
+    /**
+     * The casings adjacent to each of our faces, used when linking pipes.
+     */
+    private final CasingImpl[] neighbors = new CasingImpl[Face.VALUES.length];
+
+    /**
+     * Whether to hold back dirty marking and data sent by modules until
+     * {@link #endDeferring()} is called, see {@link #beginDeferring()}.
+     */
+    private boolean isDeferring;
+
+    /**
+     * Whether a module marked the casing dirty while deferring.
+     */
+    private boolean isDirtyDeferred;
+
+    /**
+     * The latest message sent for the module on each face while deferring.
+     */
+    private final AbstractModuleMessage[] deferredMessages = new AbstractModuleMessage[Face.VALUES.length];
+
+    /**
+     * The latest message sent for the module on each face that has not been
+     * sent to players further away yet, see {@link #addDistantMessages(List)}.
+     */
+    private final AbstractModuleMessage[] distantMessages = new AbstractModuleMessage[Face.VALUES.length];
+
     // --------------------------------------------------------------------- //
 
     public CasingImpl(final TileEntityCasing tileEntity) {
@@ -81,11 +133,83 @@ public final class CasingImpl implements Casing {
 
         for (final Face face : Face.VALUES) {
             for (final Port port : Port.VALUES) {
-                pipes[pack(face, port)] = new PipeImpl(this, face, mapFace(face, port), mapSide(face, port));
+                final int index = pack(face, port);
+                pipes[index] = new PipeImpl(this, pipeStates, index, face, mapFace(face, port), mapSide(face, port));
+            }
+        }
+        unlinkPipes();
+    }
+
+    /**
+     * Set the casing adjacent to the specified face.
+     * <p>
+     * Takes effect the next time pipes are linked using {@link #linkPipes()}.
+     *
+     * @param face     the face the casing is adjacent to.
+     * @param neighbor the adjacent casing, or <tt>null</tt> if there is none.
+     */
+    public void setNeighbor(final Face face, final CasingImpl neighbor) {
+        neighbors[face.ordinal()] = neighbor;
+    }
+
+    /**
+     * Directly connect the pipes leading from modules in this casing into
+     * faces adjacent to other casings to the modules they end up at.
+     * <p>
+     * Pipes are followed across as many casings as necessary, i.e. along the
+     * path data would take when relayed by {@link li.cil.tis3d.common.module.ModuleForwarder}s,
+     * but data arrives at the other end as if it were a single pipe.
+     * <p>
+     * Used by the controller after a scan, when {@link Settings#linkCasingPipes}
+     * is enabled, after calling {@link #unlinkPipes()} on all of its casings.
+     */
+    public void linkPipes() {
+        for (final Face face : Face.VALUES) {
+            if (neighbors[face.ordinal()] == null) {
+                continue;
+            }
+            for (final Port port : Port.VALUES) {
+                // Pipes written from a face adjacent to another casing are
+                // linked starting from the casing the data comes from.
+                if (neighbors[mapFace(face, port).ordinal()] != null) {
+                    continue;
+                }
+
+                // Follow the pipe into our neighbors until we arrive at a
+                // face that isn't adjacent to another casing. Each pipe has
+                // at most one predecessor, and ours has none, so this can't
+                // loop, unless neighbors are inconsistent.
+                CasingImpl readingCasing = this;
+                Face readingFace = face;
+                Port readingPort = port;
+                int hops = 0;
+                while (readingCasing.neighbors[readingFace.ordinal()] != null && hops++ <= Settings.maxCasingsPerController) {
+                    final CasingImpl neighbor = readingCasing.neighbors[readingFace.ordinal()];
+                    final Face neighborFace = readingFace.getOpposite();
+                    final Port neighborPort = flipSide(readingPort);
+                    readingCasing = neighbor;
+                    readingFace = mapFace(neighborFace, neighborPort);
+                    readingPort = mapSide(neighborFace, neighborPort);
+                }
+                if (readingCasing.neighbors[readingFace.ordinal()] != null) {
+                    continue;
+                }
+
+                final int index = pack(face, port);
+                final PipeImpl pipe = pipes[index].linkTo(readingCasing, readingFace);
+                connectedPipes[index] = pipe;
+                readingCasing.connectedPipes[pack(readingFace, readingPort)] = pipe;
             }
         }
     }
 
+    /**
+     * Connect modules in this casing to our own pipes again, undoing {@link #linkPipes()}.
+     */
+    public void unlinkPipes() {
+        System.arraycopy(pipes, 0, connectedPipes, 0, pipes.length);
+    }
+
     /**
      * Calls {@link Module#onEnabled()} on all modules.
      * <p>
@@ -111,32 +235,150 @@ public final class CasingImpl implements Casing {
                 module.onDisabled();
             }
         }
-        for (final PipeImpl pipe : pipes) {
+        for (final PipeImpl pipe : connectedPipes) {
             pipe.cancelRead();
             pipe.cancelWrite();
         }
     }
 
     /**
-     * Advance the logic of all modules by calling {@link Module#step()} on them.
+     * Advances the logic of all pipes by calling {@link PipeStates#step(PipeImpl[])}.
+     * <p>
+     * This will advance pipes with both an active read and write operation to
+     * transferring mode, if they're not already in transferring mode.
+     */
+    public void stepPipes() {
+        pipeStates.step(connectedPipes);
+    }
+
+    /**
+     * Get how often data was read from each pipe of this casing since the
+     * last call.
+     * <p>
+     * Used by the controller to let clients show transfers, once per tick,
+     * see {@link #getPipeTransferPosition(BlockPos, int)}.
+     *
+     * @return the number of reads per pipe, by index, or <tt>null</tt> if
+     * no data was read from any pipe.
+     */
+    public int[] takePipeTransfers() {
+        return pipeStates.takeTransfers();
+    }
+
+    /**
+     * Get the position at which to show a transfer over a pipe, which is
+     * just outside the edge of the casing the pipe runs along.
+     *
+     * @param position the position of the casing the pipe belongs to.
+     * @param index    the index of the pipe in the casing.
+     * @return the position to show the transfer at.
      */
-    public void stepModules() {
+    public static Vec3 getPipeTransferPosition(final BlockPos position, final int index) {
+        final Face face = Face.VALUES[index / Port.VALUES.length];
+        final Port port = Port.VALUES[index % Port.VALUES.length];
+        final EnumFacing receivingFacing = Face.toEnumFacing(face);
+        final EnumFacing sendingFacing = Face.toEnumFacing(mapFace(face, port));
+        final double ox = receivingFacing.getFrontOffsetX() + sendingFacing.getFrontOffsetX();
+        final double oy = receivingFacing.getFrontOffsetY() + sendingFacing.getFrontOffsetY();
+        final double oz = receivingFacing.getFrontOffsetZ() + sendingFacing.getFrontOffsetZ();
+        final double extraOffsetY = oy < 0 ? -0.2 : (oy > 0) ? 0.1 : 0;
+        return new Vec3(ox * 0.55 + position.getX() + 0.5,
+                oy * 0.55 + position.getY() + 0.5 + extraOffsetY,
+                oz * 0.55 + position.getZ() + 0.5);
+    }
+
+    /**
+     * Hold back dirty marking and data sent by modules to clients, until
+     * {@link #endDeferring()} is called. Only the data sent last by each
+     * module is kept, see {@link Casing#sendData(Face, NBTTagCompound)}.
+     * <p>
+     * Used by the controller while stepping, to only mark casings dirty
+     * once per tick, and to send the data of all its casings in a batch.
+     */
+    public void beginDeferring() {
+        isDeferring = true;
+    }
+
+    /**
+     * Notify modules that stepping finished, see {@link StepListener}, stop
+     * deferring, mark the casing dirty if a module did so while deferring,
+     * and get the latest message sent for each module.
+     *
+     * @return the messages sent while deferring, or <tt>null</tt> if there were none.
+     */
+    public List<AbstractModuleMessage> endDeferring() {
         for (final Module module : modules) {
-            if (module != null) {
-                module.step();
+            if (module instanceof StepListener) {
+                ((StepListener) module).onStepsCompleted();
+            }
+        }
+
+        isDeferring = false;
+        if (isDirtyDeferred) {
+            isDirtyDeferred = false;
+            markDirty();
+        }
+        List<AbstractModuleMessage> messages = null;
+        for (final Face face : Face.VALUES) {
+            final AbstractModuleMessage message = deferredMessages[face.ordinal()];
+            if (message != null) {
+                deferredMessages[face.ordinal()] = null;
+                if (messages == null) {
+                    messages = new ArrayList<>();
+                }
+                messages.add(message);
             }
         }
+        return messages;
     }
 
     /**
-     * Advances the logic of all pipes by calling {@link PipeImpl#step()} on them.
+     * Keep messages sent while deferring, to send them to players further
+     * away later on, see {@link #takeDistantMessages()}. Only the message
+     * added last for each face is kept, superseded messages are released.
      * <p>
-     * This will advance pipes with both an active read and write operation to
-     * transferring mode, if they're not already in transferring mode.
+     * Used by the controller, which sends messages to players close by each
+     * tick, but only periodically to players further away.
+     *
+     * @param messages the messages to keep.
      */
-    public void stepPipes() {
-        for (final PipeImpl pipe : pipes) {
-            pipe.step();
+    public void addDistantMessages(final List<AbstractModuleMessage> messages) {
+        for (final AbstractModuleMessage message : messages) {
+            final int index = message.getFace().ordinal();
+            if (distantMessages[index] != null) {
+                distantMessages[index].release();
+            }
+            distantMessages[index] = message;
+        }
+    }
+
+    /**
+     * Get the messages kept for players further away and forget about them.
+     * The caller is responsible for releasing the messages.
+     *
+     * @return the messages kept, or <tt>null</tt> if there were none.
+     */
+    public List<AbstractModuleMessage> takeDistantMessages() {
+        List<AbstractModuleMessage> messages = null;
+        for (final Face face : Face.VALUES) {
+            final AbstractModuleMessage message = distantMessages[face.ordinal()];
+            if (message != null) {
+                distantMessages[face.ordinal()] = null;
+                if (messages == null) {
+                    messages = new ArrayList<>();
+                }
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Release the messages kept for players further away.
+     */
+    public void clearDistantMessages() {
+        for (final Face face : Face.VALUES) {
+            clearDistantMessage(face);
         }
     }
 
@@ -222,6 +464,16 @@ public final class CasingImpl implements Casing {
         return face.ordinal() * Port.VALUES.length + port.ordinal();
     }
 
+    /**
+     * Get the port on the other side of a face shared by two casings.
+     *
+     * @param port the port on this side of the face.
+     * @return the port on the other side of the face.
+     */
+    private static Port flipSide(final Port port) {
+        return (port == Port.LEFT || port == Port.RIGHT) ? port.getOpposite() : port;
+    }
+
     /**
      * Map a face-port tuple to the face-tuple representing its opposite (i.e.
      * the face-port tuple defining the same edge but from the other side),
@@ -250,7 +502,11 @@ public final class CasingImpl implements Casing {
 
     @Override
     public void markDirty() {
-        tileEntity.markDirty();
+        if (isDeferring) {
+            isDirtyDeferred = true;
+            return;
+        }
+        TickHandlerControllers.INSTANCE.runOnServerThread(tileEntity::markDirty);
     }
 
     @Override
@@ -275,6 +531,12 @@ public final class CasingImpl implements Casing {
         // Apply new module before adjust remaining state.
         modules[face.ordinal()] = module;
 
+        // Let our controller know its list of modules to step is outdated.
+        final TileEntityController controller = tileEntity.getController();
+        if (controller != null) {
+            controller.invalidateSchedule();
+        }
+
         // Reset redstone output if the previous module was redstone capable.
         if (hadRedstone) {
             if (!getCasingWorld().isRemote) {
@@ -299,12 +561,12 @@ public final class CasingImpl implements Casing {
 
     @Override
     public Pipe getReceivingPipe(final Face face, final Port port) {
-        return pipes[pack(face, port)];
+        return connectedPipes[pack(face, port)];
     }
 
     @Override
     public Pipe getSendingPipe(final Face face, final Port port) {
-        return pipes[packMapped(face, port)];
+        return connectedPipes[packMapped(face, port)];
     }
 
     @Override
@@ -313,8 +575,59 @@ public final class CasingImpl implements Casing {
         if (getCasingWorld().isRemote) {
             Network.INSTANCE.getWrapper().sendToServer(message);
         } else {
+            sendMessage(face, message);
+        }
+    }
+
+    @Override
+    public void sendData(final Face face, final ByteBuf data) {
+        final MessageModuleByteData message = new MessageModuleByteData(this, face, data);
+        if (getCasingWorld().isRemote) {
+            Network.INSTANCE.getWrapper().sendToServer(message);
+            message.release();
+        } else {
+            sendMessage(face, message);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Send a message concerning the module on the specified face to all
+     * clients close to the casing.
+     * <p>
+     * This allows modules to use dedicated messages instead of generic
+     * module data, for states sent very frequently. While deferring, only
+     * the message sent last for each face is kept, regardless of its type.
+     * The message is released once sent or superseded.
+     *
+     * @param face    the face of the module the message concerns.
+     * @param message the message to send.
+     */
+    public void sendMessage(final Face face, final AbstractModuleMessage message) {
+        if (isDeferring) {
+            final AbstractModuleMessage supersededMessage = deferredMessages[face.ordinal()];
+            if (supersededMessage != null) {
+                supersededMessage.release();
+            }
+            deferredMessages[face.ordinal()] = message;
+            return;
+        }
+        TickHandlerControllers.INSTANCE.runOnServerThread(() -> {
+            // Don't let an older message sent to players further away later
+            // on overwrite this one.
+            clearDistantMessage(face);
             final NetworkRegistry.TargetPoint point = Network.getTargetPoint(tileEntity, Network.RANGE_MEDIUM);
             Network.INSTANCE.getWrapper().sendToAllAround(message, point);
+            message.release();
+        });
+    }
+
+    private void clearDistantMessage(final Face face) {
+        final AbstractModuleMessage message = distantMessages[face.ordinal()];
+        if (message != null) {
+            message.release();
+            distantMessages[face.ordinal()] = null;
         }
     }
 }
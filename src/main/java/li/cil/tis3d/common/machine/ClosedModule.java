@@ -0,0 +1,14 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by {@link ConfinedModule}s that do not interact with the world
+ * when stepped, other than marking their casing dirty and sending data to
+ * clients via their casing.
+ * <p>
+ * Machines consisting only of such modules may be stepped a lot faster than
+ * usual, see {@link li.cil.tis3d.common.Settings#turboMultiplier}.
+ */
+public interface ClosedModule extends ConfinedModule {
+}
@@ -0,0 +1,26 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by {@link Module}s that only interact with other modules via
+ * the {@link Pipe}s of their face, and only affect the world via their casing
+ * or {@link li.cil.tis3d.common.event.TickHandlerControllers#runOnServerThread(Runnable)}.
+ * <p>
+ * This allows stepping them in parallel with all modules they are not
+ * connected to, see {@link ParallelSchedule}, and stepping controllers only
+ * containing such modules on worker threads, see
+ * {@link li.cil.tis3d.common.event.TickHandlerControllers}.
+ */
+public interface ConfinedModule {
+    /**
+     * Get the module whose pipes this module accesses in addition to the
+     * pipes of its own face, if any.
+     *
+     * @return the linked module, or <tt>null</tt>.
+     */
+    default Module getLinkedModule() {
+        return null;
+    }
+}
@@ -0,0 +1,259 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.event.TickHandlerControllers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+
+/**
+ * Steps the modules of a controller in parallel, with exactly the same results
+ * as stepping them one after the other.
+ * <p>
+ * Within a step, modules only affect each other via the pipes connecting them.
+ * So modules are split into groups connected via pipes, and the groups are
+ * distributed over a number of batches, which are stepped in parallel. Each
+ * batch steps its modules in their usual order. All modules that may affect
+ * each other in other ways, i.e. all modules not implementing {@link ConfinedModule},
+ * are put into a single group. As these may also access the world directly,
+ * their batch is stepped on the calling thread, i.e. the server thread.
+ * <p>
+ * Anything the modules pass to {@link TickHandlerControllers#runOnServerThread(Runnable)}
+ * is collected per batch, and run in the order the modules would have passed
+ * it in when stepped one after the other, once all batches finished.
+ */
+public final class ParallelSchedule {
+    // --------------------------------------------------------------------- //
+    // Computed data
+
+    /**
+     * The modules to step in each batch, in the order they are stepped in.
+     */
+    private final Module[][] batches;
+
+    /**
+     * The batch of each module in the serial schedule, by its index in it.
+     */
+    private final int[] batchOfModule;
+
+    /**
+     * The batch containing the modules not implementing {@link ConfinedModule},
+     * which is stepped on the calling thread, or <tt>-1</tt> if there are none.
+     */
+    private final int unconfinedBatch;
+
+    /**
+     * For each module in each batch, the number of tasks the batch collected
+     * up to and including stepping that module. Written anew each step.
+     */
+    private final int[][] taskEnds;
+
+    /**
+     * The tasks stepping the batches, returning the tasks collected by them.
+     */
+    private final List<Callable<List<Runnable>>> steps = new ArrayList<>();
+
+    // --------------------------------------------------------------------- //
+
+    private ParallelSchedule(final Module[][] batches, final int[] batchOfModule, final int unconfinedBatch) {
+        this.batches = batches;
+        this.batchOfModule = batchOfModule;
+        this.unconfinedBatch = unconfinedBatch;
+        this.taskEnds = new int[batches.length][];
+        for (int batch = 0; batch < batches.length; batch++) {
+            final Module[] modules = batches[batch];
+            final int[] ends = new int[modules.length];
+            taskEnds[batch] = ends;
+            steps.add(() -> {
+                final List<Runnable> tasks = new ArrayList<>();
+                TickHandlerControllers.INSTANCE.collectTasks(tasks, () -> {
+                    for (int index = 0; index < modules.length; index++) {
+                        modules[index].step();
+                        ends[index] = tasks.size();
+                    }
+                });
+                return tasks;
+            });
+        }
+    }
+
+    /**
+     * Split the specified modules into batches that can be stepped in parallel.
+     *
+     * @param schedule   the modules to step, in the order they are stepped in.
+     * @param batchCount the maximum number of batches to split the modules into.
+     * @return the parallel schedule, or <tt>null</tt> if the modules cannot be split up.
+     */
+    public static ParallelSchedule build(final Module[] schedule, final int batchCount) {
+        final DisjointSets groups = new DisjointSets();
+        final Map<Module, Integer> ids = new IdentityHashMap<>();
+        final Queue<Module> queue = new ArrayDeque<>();
+
+        // Passive modules are never stepped, but may still be called back
+        // when another module completes a transfer, so we also have to follow
+        // pipes into modules not in the schedule.
+        final int unconfined = groups.add();
+        for (final Module module : schedule) {
+            getId(module, groups, ids, queue);
+        }
+        while (!queue.isEmpty()) {
+            final Module module = queue.poll();
+            final int id = ids.get(module);
+            if (module instanceof ConfinedModule) {
+                final Module linkedModule = ((ConfinedModule) module).getLinkedModule();
+                if (linkedModule != null) {
+                    groups.union(id, getId(linkedModule, groups, ids, queue));
+                }
+            } else {
+                groups.union(id, unconfined);
+            }
+
+            final Casing casing = module.getCasing();
+            final Face face = module.getFace();
+            for (final Port port : Port.VALUES) {
+                final Module writer = ((PipeImpl) casing.getReceivingPipe(face, port)).getWriter();
+                if (writer != null) {
+                    groups.union(id, getId(writer, groups, ids, queue));
+                }
+                final Module reader = ((PipeImpl) casing.getSendingPipe(face, port)).getReader();
+                if (reader != null) {
+                    groups.union(id, getId(reader, groups, ids, queue));
+                }
+            }
+        }
+
+        // Count the scheduled modules per group, collecting the groups in the
+        // order of their first module, to keep batching deterministic.
+        final int[] groupSizes = new int[groups.size()];
+        final List<Integer> groupOrder = new ArrayList<>();
+        final int[] groupOfModule = new int[schedule.length];
+        for (int index = 0; index < schedule.length; index++) {
+            final int group = groups.find(ids.get(schedule[index]));
+            groupOfModule[index] = group;
+            if (groupSizes[group]++ == 0) {
+                groupOrder.add(group);
+            }
+        }
+
+        final int count = Math.min(batchCount, groupOrder.size());
+        if (count < 2) {
+            return null;
+        }
+
+        // Assign the largest groups first, each to the least loaded batch.
+        groupOrder.sort((group1, group2) -> Integer.compare(groupSizes[group2], groupSizes[group1]));
+        final int[] batchOfGroup = new int[groupSizes.length];
+        final int[] batchSizes = new int[count];
+        for (final int group : groupOrder) {
+            int batch = 0;
+            for (int candidate = 1; candidate < count; candidate++) {
+                if (batchSizes[candidate] < batchSizes[batch]) {
+                    batch = candidate;
+                }
+            }
+            batchOfGroup[group] = batch;
+            batchSizes[batch] += groupSizes[group];
+        }
+
+        final Module[][] batches = new Module[count][];
+        for (int batch = 0; batch < count; batch++) {
+            batches[batch] = new Module[batchSizes[batch]];
+        }
+        final int[] batchOfModule = new int[schedule.length];
+        final int[] positions = new int[count];
+        for (int index = 0; index < schedule.length; index++) {
+            final int batch = batchOfGroup[groupOfModule[index]];
+            batchOfModule[index] = batch;
+            batches[batch][positions[batch]++] = schedule[index];
+        }
+
+        final int unconfinedGroup = groups.find(unconfined);
+        final int unconfinedBatch = groupSizes[unconfinedGroup] > 0 ? batchOfGroup[unconfinedGroup] : -1;
+
+        return new ParallelSchedule(batches, batchOfModule, unconfinedBatch);
+    }
+
+    /**
+     * Advance all modules by one step.
+     */
+    public void step() {
+        final List<List<Runnable>> results = unconfinedBatch >= 0
+                ? TickHandlerControllers.INSTANCE.invokeAll(steps, unconfinedBatch)
+                : TickHandlerControllers.INSTANCE.invokeAll(steps);
+
+        final int[] positions = new int[batches.length];
+        for (final int batch : batchOfModule) {
+            final int position = positions[batch]++;
+            final int[] ends = taskEnds[batch];
+            final List<Runnable> tasks = results.get(batch);
+            for (int index = position > 0 ? ends[position - 1] : 0; index < ends[position]; index++) {
+                TickHandlerControllers.INSTANCE.runOnServerThread(tasks.get(index));
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static int getId(final Module module, final DisjointSets groups, final Map<Module, Integer> ids, final Queue<Module> queue) {
+        final Integer id = ids.get(module);
+        if (id != null) {
+            return id;
+        }
+        final int newId = groups.add();
+        ids.put(module, newId);
+        queue.add(module);
+        return newId;
+    }
+
+    /**
+     * Minimal union-find over consecutive integer ids.
+     */
+    private static final class DisjointSets {
+        private int[] parents = new int[64];
+        private int size;
+
+        int add() {
+            if (size == parents.length) {
+                parents = Arrays.copyOf(parents, size * 2);
+            }
+            parents[size] = size;
+            return size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int find(final int id) {
+            int root = id;
+            while (parents[root] != root) {
+                root = parents[root];
+            }
+            // Compress the path, so later lookups are quick.
+            int current = id;
+            while (parents[current] != root) {
+                final int next = parents[current];
+                parents[current] = root;
+                current = next;
+            }
+            return root;
+        }
+
+        void union(final int id1, final int id2) {
+            final int root1 = find(id1);
+            final int root2 = find(id2);
+            if (root1 != root2) {
+                parents[Math.max(root1, root2)] = Math.min(root1, root2);
+            }
+        }
+    }
+}
@@ -5,62 +5,18 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.Module;
-import li.cil.tis3d.common.network.Network;
-import li.cil.tis3d.common.network.message.MessageParticleEffect;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.BlockPos;
-import net.minecraft.util.EnumParticleTypes;
-import net.minecraft.world.World;
-import net.minecraftforge.fml.common.network.NetworkRegistry;
 
 /**
  * Implementation of {@link Pipe}s for passing data between {@link Module}s.
+ * <p>
+ * The state of the pipe is stored in the {@link PipeStates} of the casing it
+ * belongs to, pipes themselves only provide a view on it.
  */
 public final class PipeImpl implements Pipe {
-    // --------------------------------------------------------------------- //
-    // Persisted data
-
-    /**
-     * The current state of the pipe.
-     */
-    private State readState = State.IDLE, writeState = State.IDLE;
-
-    /**
-     * The value currently being written over this pipe.
-     */
-    private int value = Integer.MIN_VALUE;
-
     // --------------------------------------------------------------------- //
     // Computed data
 
-    /**
-     * Current state of the pipe, to enforce synchronization, i.e. make sure
-     * each read/write combination always takes the same amount of steps
-     * regardless of whether reader or writer ran first (when they start in
-     * the same step).
-     */
-    private enum State {
-        /**
-         * Waiting for a reader.
-         */
-        IDLE,
-
-        /**
-         * Reader registered in this update.
-         */
-        BUSY,
-
-        /**
-         * Reader has registered and is ready to receive.
-         */
-        READY,
-
-        /**
-         * Data was read from the pipe this update.
-         */
-        FLUSHING
-    }
-
     // NBT tag names.
     private static final String TAG_READ_STATE = "readState";
     private static final String TAG_WRITE_STATE = "writeState";
@@ -71,6 +27,16 @@ public final class PipeImpl implements Pipe {
      */
     private final Casing casing;
 
+    /**
+     * The packed state of the pipes of the casing, holding our state.
+     */
+    private final PipeStates states;
+
+    /**
+     * The index of this pipe's state in the packed states.
+     */
+    private final int index;
+
     /**
      * The faces this pipe is connected to in the owning {@link Casing}.
      */
@@ -81,41 +47,54 @@ public final class PipeImpl implements Pipe {
      */
     private final Port sendingPort;
 
+    /**
+     * The casing and face of the module reading from this pipe. This is the
+     * owning {@link Casing} and the receiving face, unless the pipe has been
+     * linked across casings using {@link #linkTo(Casing, Face)}.
+     */
+    private final Casing readingCasing;
+    private final Face readingFace;
+
     // --------------------------------------------------------------------- //
 
-    public PipeImpl(final Casing casing, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
+    PipeImpl(final Casing casing, final PipeStates states, final int index, final Face receivingFace, final Face sendingFace, final Port sendingPort) {
+        this(casing, states, index, receivingFace, sendingFace, sendingPort, casing, receivingFace);
+    }
+
+    private PipeImpl(final Casing casing, final PipeStates states, final int index, final Face receivingFace, final Face sendingFace, final Port sendingPort, final Casing readingCasing, final Face readingFace) {
         this.casing = casing;
+        this.states = states;
+        this.index = index;
         this.receivingFace = receivingFace;
         this.sendingFace = sendingFace;
         this.sendingPort = sendingPort;
+        this.readingCasing = readingCasing;
+        this.readingFace = readingFace;
     }
 
     /**
-     * Called from the owning {@link Casing} after
-     * all {@link Module}s have been updated to update the pipe's
-     * state in a synchronized manner.
+     * Create a view on this pipe that is read from by the module on the
+     * specified face of another casing, instead of by the module on our
+     * receiving face.
+     *
+     * @param readingCasing the casing of the module reading from the pipe.
+     * @param readingFace   the face of the module reading from the pipe.
+     * @return the linked pipe, sharing its state with this pipe.
      */
-    public void step() {
-        if (writeState == State.BUSY) {
-            writeState = State.READY;
-        } else if (readState == State.BUSY) {
-            readState = State.READY;
-        } else if (writeState == State.READY && readState == State.READY) {
-            writeState = State.FLUSHING;
-            readState = State.FLUSHING;
-        }
+    PipeImpl linkTo(final Casing readingCasing, final Face readingFace) {
+        return new PipeImpl(casing, states, index, receivingFace, sendingFace, sendingPort, readingCasing, readingFace);
     }
 
     public void readFromNBT(final NBTTagCompound nbt) {
-        readState = State.valueOf(nbt.getString(TAG_READ_STATE));
-        writeState = State.valueOf(nbt.getString(TAG_WRITE_STATE));
-        value = nbt.getInteger(TAG_VALUE);
+        states.readStates[index] = PipeStates.fromName(nbt.getString(TAG_READ_STATE));
+        states.writeStates[index] = PipeStates.fromName(nbt.getString(TAG_WRITE_STATE));
+        states.values[index] = nbt.getInteger(TAG_VALUE);
     }
 
     public void writeToNBT(final NBTTagCompound nbt) {
-        nbt.setString(TAG_READ_STATE, readState.name());
-        nbt.setString(TAG_WRITE_STATE, writeState.name());
-        nbt.setInteger(TAG_VALUE, value);
+        nbt.setString(TAG_READ_STATE, PipeStates.getName(states.readStates[index]));
+        nbt.setString(TAG_WRITE_STATE, PipeStates.getName(states.writeStates[index]));
+        nbt.setInteger(TAG_VALUE, states.values[index]);
     }
 
     // --------------------------------------------------------------------- //
@@ -123,51 +102,61 @@ public final class PipeImpl implements Pipe {
 
     @Override
     public void beginWrite(final int value) {
-        if (writeState != State.IDLE) {
+        if (states.writeStates[index] != PipeStates.IDLE) {
             throw new IllegalStateException("Trying to write to a busy pipe. Check isWriting().");
         }
-        writeState = State.BUSY;
-        this.value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        states.writeStates[index] = PipeStates.BUSY;
+        states.values[index] = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        notifyListeners();
     }
 
     @Override
     public void cancelWrite() {
-        writeState = State.IDLE;
-        value = Integer.MIN_VALUE;
-        if (readState == State.FLUSHING) {
-            readState = State.READY;
+        final boolean changed = states.writeStates[index] != PipeStates.IDLE || states.readStates[index] == PipeStates.FLUSHING;
+        states.writeStates[index] = PipeStates.IDLE;
+        states.values[index] = Integer.MIN_VALUE;
+        if (states.readStates[index] == PipeStates.FLUSHING) {
+            states.readStates[index] = PipeStates.READY;
+        }
+        if (changed) {
+            notifyListeners();
         }
     }
 
     @Override
     public boolean isWriting() {
-        return writeState != State.IDLE;
+        return states.writeStates[index] != PipeStates.IDLE;
     }
 
     @Override
     public void beginRead() {
-        if (readState != State.IDLE) {
+        if (states.readStates[index] != PipeStates.IDLE) {
             throw new IllegalStateException("Trying to write to a busy pipe. Check isReading().");
         }
-        readState = State.BUSY;
+        states.readStates[index] = PipeStates.BUSY;
+        notifyListeners();
     }
 
     @Override
     public void cancelRead() {
-        readState = State.IDLE;
-        if (writeState == State.FLUSHING) {
-            writeState = State.READY;
+        final boolean changed = states.readStates[index] != PipeStates.IDLE || states.writeStates[index] == PipeStates.FLUSHING;
+        states.readStates[index] = PipeStates.IDLE;
+        if (states.writeStates[index] == PipeStates.FLUSHING) {
+            states.writeStates[index] = PipeStates.READY;
+        }
+        if (changed) {
+            notifyListeners();
         }
     }
 
     @Override
     public boolean isReading() {
-        return readState != State.IDLE;
+        return states.readStates[index] != PipeStates.IDLE;
     }
 
     @Override
     public boolean canTransfer() {
-        return writeState == State.FLUSHING && readState == State.FLUSHING;
+        return states.writeStates[index] == PipeStates.FLUSHING && states.readStates[index] == PipeStates.FLUSHING;
     }
 
     @Override
@@ -176,21 +165,10 @@ public final class PipeImpl implements Pipe {
             throw new IllegalStateException("No data to read. Check canTransfer().");
         }
 
-        final BlockPos position = casing.getPosition();
-        final double ox = Face.toEnumFacing(receivingFace).getFrontOffsetX() + Face.toEnumFacing(sendingFace).getFrontOffsetX();
-        final double oy = Face.toEnumFacing(receivingFace).getFrontOffsetY() + Face.toEnumFacing(sendingFace).getFrontOffsetY();
-        final double oz = Face.toEnumFacing(receivingFace).getFrontOffsetZ() + Face.toEnumFacing(sendingFace).getFrontOffsetZ();
-        final double x = ox * 0.55 + position.getX() + 0.5;
-        final double y = oy * 0.55 + position.getY() + 0.5;
-        final double z = oz * 0.55 + position.getZ() + 0.5;
-        final double extraOffsetY = oy < 0 ? -0.2 : (oy > 0) ? 0.1 : 0;
-
-        final World world = casing.getCasingWorld();
-        final MessageParticleEffect message = new MessageParticleEffect(world, EnumParticleTypes.REDSTONE, x, y + extraOffsetY, z);
-        final NetworkRegistry.TargetPoint target = Network.getTargetPoint(world, x, y, z, Network.RANGE_LOW);
-        Network.INSTANCE.getWrapper().sendToAllAround(message, target);
+        // Clients show an effect for this, see CasingImpl#takePipeTransfers().
+        states.transferCounts[index]++;
 
-        final int result = value;
+        final int result = states.values[index];
 
         cancelWrite();
         cancelRead();
@@ -199,11 +177,46 @@ public final class PipeImpl implements Pipe {
         return result;
     }
 
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the module writing to this pipe.
+     *
+     * @return the writing module, or <tt>null</tt> if there is none.
+     */
+    Module getWriter() {
+        return casing.getModule(sendingFace);
+    }
+
+    /**
+     * Get the module reading from this pipe.
+     *
+     * @return the reading module, or <tt>null</tt> if there is none.
+     */
+    Module getReader() {
+        return readingCasing.getModule(readingFace);
+    }
+
+    /**
+     * Notify the modules connected to this pipe that its state changed.
+     */
+    void notifyListeners() {
+        notifyListener(readingCasing, readingFace);
+        notifyListener(casing, sendingFace);
+    }
+
+    private static void notifyListener(final Casing casing, final Face face) {
+        final Module module = casing.getModule(face);
+        if (module instanceof PipeListener) {
+            ((PipeListener) module).onPipeChanged();
+        }
+    }
+
     // --------------------------------------------------------------------- //
     // Object
 
     @Override
     public String toString() {
-        return casing.getPosition() + ": " + sendingFace + " [" + writeState + "] -> " + receivingFace + " [" + readState + "]";
+        return casing.getPosition() + ": " + sendingFace + " [" + PipeStates.getName(states.writeStates[index]) + "] -> " + readingCasing.getPosition() + ": " + readingFace + " [" + PipeStates.getName(states.readStates[index]) + "]";
     }
 }
@@ -0,0 +1,20 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by {@link Module}s that want to be notified when the state
+ * of a {@link Pipe} they are connected to changes.
+ * <p>
+ * This allows modules that are blocked on a pipe operation to skip their
+ * updates until one of their pipes actually changed.
+ */
+public interface PipeListener {
+    /**
+     * Called when the state of a pipe the module is reading from or writing
+     * to changed, e.g. due to a read or write being started, advanced by the
+     * casing, completed or canceled.
+     */
+    void onPipeChanged();
+}
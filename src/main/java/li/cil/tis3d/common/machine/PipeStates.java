@@ -0,0 +1,137 @@
+package li.cil.tis3d.common.machine;
+
+import java.util.Arrays;
+
+/**
+ * The state of a number of {@link PipeImpl}s, packed into primitive arrays.
+ * <p>
+ * The pipes themselves only hold their index into these arrays, which keeps
+ * the state compact and allows advancing all pipes in a single tight loop.
+ * <p>
+ * Read and write states are used to enforce synchronization, i.e. make sure
+ * each read/write combination always takes the same amount of steps
+ * regardless of whether reader or writer ran first (when they start in the
+ * same step).
+ */
+final class PipeStates {
+    /**
+     * Waiting for a reader.
+     */
+    static final byte IDLE = 0;
+
+    /**
+     * Reader registered in this update.
+     */
+    static final byte BUSY = 1;
+
+    /**
+     * Reader has registered and is ready to receive.
+     */
+    static final byte READY = 2;
+
+    /**
+     * Data was read from the pipe this update.
+     */
+    static final byte FLUSHING = 3;
+
+    /**
+     * Names of the states, as used when persisting them.
+     */
+    private static final String[] NAMES = new String[]{"IDLE", "BUSY", "READY", "FLUSHING"};
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The current read state of each pipe.
+     */
+    final byte[] readStates;
+
+    /**
+     * The current write state of each pipe.
+     */
+    final byte[] writeStates;
+
+    /**
+     * The value currently being written over each pipe.
+     */
+    final int[] values;
+
+    /**
+     * How often data was read from each pipe since transfers were last taken,
+     * see {@link #takeTransfers()}. Kept per pipe instead of as a bit mask,
+     * as pipes of a casing may be read from in parallel.
+     */
+    final int[] transferCounts;
+
+    // --------------------------------------------------------------------- //
+
+    PipeStates(final int count) {
+        readStates = new byte[count];
+        writeStates = new byte[count];
+        values = new int[count];
+        transferCounts = new int[count];
+        Arrays.fill(values, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Advance the state of all pipes in a synchronized manner.
+     * <p>
+     * Called from the owning {@link li.cil.tis3d.api.machine.Casing} after
+     * all modules have been updated.
+     *
+     * @param pipes the pipes to notify of state changes, by index.
+     */
+    void step(final PipeImpl[] pipes) {
+        for (int index = 0; index < pipes.length; index++) {
+            final byte writeState = writeStates[index];
+            final byte readState = readStates[index];
+            if (writeState == BUSY) {
+                writeStates[index] = READY;
+            } else if (readState == BUSY) {
+                readStates[index] = READY;
+            } else if (writeState == READY && readState == READY) {
+                writeStates[index] = FLUSHING;
+                readStates[index] = FLUSHING;
+            } else {
+                continue;
+            }
+            pipes[index].notifyListeners();
+        }
+    }
+
+    /**
+     * Get how often data was read from each pipe since the last call and
+     * forget about these transfers.
+     *
+     * @return the number of reads per pipe, by index, or <tt>null</tt> if
+     * no data was read from any pipe.
+     */
+    int[] takeTransfers() {
+        int[] transfers = null;
+        for (int index = 0; index < transferCounts.length; index++) {
+            if (transferCounts[index] != 0) {
+                if (transfers == null) {
+                    transfers = new int[transferCounts.length];
+                }
+                transfers[index] = transferCounts[index];
+                transferCounts[index] = 0;
+            }
+        }
+        return transfers;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    static String getName(final byte state) {
+        return NAMES[state];
+    }
+
+    static byte fromName(final String name) {
+        for (byte state = 0; state < NAMES.length; state++) {
+            if (NAMES[state].equals(name)) {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("No pipe state named " + name);
+    }
+}
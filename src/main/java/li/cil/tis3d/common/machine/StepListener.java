@@ -0,0 +1,18 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.module.Module;
+
+/**
+ * Implemented by {@link Module}s that want to be notified when their casing
+ * finished stepping for the current tick.
+ * <p>
+ * This allows modules that are stepped multiple times per tick, or that skip
+ * work in some steps, to synchronize their state only once per tick.
+ */
+public interface StepListener {
+    /**
+     * Called after the last step of the casing in the current tick, before
+     * data sent by modules while stepping is sent to clients.
+     */
+    void onStepsCompleted();
+}
@@ -10,10 +10,16 @@ import li.cil.tis3d.client.render.TextureLoader;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.TIS3D;
 import li.cil.tis3d.common.item.ItemBookCode;
+import li.cil.tis3d.common.machine.CasingImpl;
+import li.cil.tis3d.common.machine.CasingProxy;
+import li.cil.tis3d.common.machine.ClosedModule;
+import li.cil.tis3d.common.machine.PipeListener;
+import li.cil.tis3d.common.machine.StepListener;
 import li.cil.tis3d.common.module.execution.MachineImpl;
 import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.network.message.MessageExecutionState;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.OpenGlHelper;
@@ -43,7 +49,7 @@ import java.util.Optional;
 /**
  * The programmable execution module.
  */
-public final class ModuleExecution extends AbstractModuleRotatable {
+public final class ModuleExecution extends AbstractModuleRotatable implements PipeListener, StepListener, ClosedModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -54,11 +60,30 @@ public final class ModuleExecution extends AbstractModuleRotatable {
     // --------------------------------------------------------------------- //
     // Computed data
 
+    /**
+     * Whether the last update did not change anything and the machine is
+     * blocked, so updates can be skipped until one of our pipes changes.
+     */
+    private boolean isSleeping;
+
+    /**
+     * Whether one of our pipes changed since the start of the last update.
+     */
+    private boolean hasPipeChanged;
+
+    /**
+     * Whether the machine state changed in a step of the current tick, but
+     * was not sent to clients yet, because the machine is fast-forwarding.
+     */
+    private boolean hasUnsentState;
+
     private enum State {
         IDLE,
         ERR,
         RUN,
-        WAIT
+        WAIT;
+
+        static final State[] VALUES = values();
     }
 
     private static final String[] STATE_LOCATIONS = new String[]{
@@ -69,7 +94,6 @@ public final class ModuleExecution extends AbstractModuleRotatable {
     };
 
     // NBT tag names.
-    private static final String TAG_FULL = "full";
     private static final String TAG_STATE = "state";
     private static final String TAG_MACHINE = "machine";
     private static final String TAG_COMPILE_ERROR = "compileError";
@@ -77,10 +101,6 @@ public final class ModuleExecution extends AbstractModuleRotatable {
     private static final String TAG_LINE_NUMBER = "lineNumber";
     private static final String TAG_START = "columnStart";
     private static final String TAG_END = "columnEnd";
-    private static final String TAG_PC = MachineState.TAG_PC;
-    private static final String TAG_ACC = MachineState.TAG_ACC;
-    private static final String TAG_BAK = MachineState.TAG_BAK;
-    private static final String TAG_LAST = MachineState.TAG_LAST;
 
     // --------------------------------------------------------------------- //
 
@@ -98,33 +118,79 @@ public final class ModuleExecution extends AbstractModuleRotatable {
 
     @Override
     public void step() {
+        if (isSleeping) {
+            return;
+        }
+
+        // Intermediate states of runs the machine fast-forwards through are
+        // only synchronized once per tick, see onStepsCompleted(). Don't even
+        // look at the state until then, as that would end fast-forwarding.
+        if (machine.isFastForwarding()) {
+            machine.step();
+            if (machine.isFastForwarding()) {
+                hasUnsentState = true;
+            } else {
+                hasUnsentState = false;
+                getCasing().markDirty();
+                sendState();
+            }
+            return;
+        }
+
         final State prevState = state;
+        hasPipeChanged = false;
 
         if (compileError != null) {
             state = State.ERR;
-        } else if (machine.getState().instructions.isEmpty()) {
+            isSleeping = true;
+        } else if (machine.getState().program.instructions.isEmpty()) {
             state = State.IDLE;
+            isSleeping = true;
         } else {
+            final MachineState machineState = machine.getState();
+            final int pc = machineState.pc;
+            final int acc = machineState.acc;
+            final int bak = machineState.bak;
+            final Optional<Port> last = machineState.last;
+            final boolean isWriteCompleted = machineState.isWriteCompleted;
+
             if (machine.step()) {
                 state = State.RUN;
-                getCasing().markDirty();
-                sendData(false);
+                if (machine.isFastForwarding()) {
+                    hasUnsentState = true;
+                } else {
+                    hasUnsentState = false;
+                    getCasing().markDirty();
+                    sendState();
+                }
                 return; // Don't send data twice.
             } else {
                 state = State.WAIT;
+
+                // If neither the machine nor any of our pipes changed, the
+                // next update would do exactly the same, so skip updates
+                // until something wakes us up.
+                isSleeping = !hasPipeChanged &&
+                             machineState.pc == pc &&
+                             machineState.acc == acc &&
+                             machineState.bak == bak &&
+                             machineState.last.equals(last) &&
+                             machineState.isWriteCompleted == isWriteCompleted;
             }
         }
 
         if (prevState != state) {
             getCasing().markDirty();
-            sendData(false);
+            sendState();
         }
     }
 
     @Override
     public void onEnabled() {
+        isSleeping = false;
+
         if (!getCasing().getCasingWorld().isRemote) {
-            sendData(true);
+            sendData();
         }
     }
 
@@ -132,14 +198,17 @@ public final class ModuleExecution extends AbstractModuleRotatable {
     public void onDisabled() {
         machine.getState().reset();
         state = State.IDLE;
+        isSleeping = false;
+        hasUnsentState = false;
 
         if (!getCasing().getCasingWorld().isRemote) {
-            sendData(false);
+            sendState();
         }
     }
 
     @Override
     public void onWriteComplete(final Port port) {
+        isSleeping = false;
         if (compileError == null) {
             machine.onWriteCompleted(port);
         }
@@ -183,7 +252,7 @@ public final class ModuleExecution extends AbstractModuleRotatable {
 
         if (!getCasing().getCasingWorld().isRemote) {
             compile(code, player);
-            sendData(true);
+            sendData();
         }
 
         return true;
@@ -191,29 +260,8 @@ public final class ModuleExecution extends AbstractModuleRotatable {
 
     @Override
     public void onData(final NBTTagCompound nbt) {
-        if (nbt.getBoolean(TAG_FULL)) {
-            readFromNBT(nbt);
-        } else {
-            machine.getState().pc = nbt.getInteger(TAG_PC);
-            machine.getState().acc = nbt.getInteger(TAG_ACC);
-            machine.getState().bak = nbt.getInteger(TAG_BAK);
-            if (nbt.hasKey(TAG_LAST)) {
-                try {
-                    machine.getState().last = Optional.of(Enum.valueOf(Port.class, nbt.getString(TAG_LAST)));
-                } catch (final IllegalArgumentException e) {
-                    TIS3D.getLog().warn("Invalid machine state received.", e);
-                }
-            } else {
-                machine.getState().last = Optional.empty();
-            }
-            if (nbt.hasKey(TAG_STATE)) {
-                try {
-                    state = Enum.valueOf(State.class, nbt.getString(TAG_STATE));
-                } catch (final IllegalArgumentException e) {
-                    TIS3D.getLog().warn("Invalid executable module state received.", e);
-                }
-            }
-        }
+        isSleeping = false;
+        readFromNBT(nbt);
     }
 
     @SideOnly(Side.CLIENT)
@@ -249,6 +297,9 @@ public final class ModuleExecution extends AbstractModuleRotatable {
     public void readFromNBT(final NBTTagCompound nbt) {
         super.readFromNBT(nbt);
 
+        machine.updateRotation();
+        isSleeping = false;
+
         try {
             final NBTTagCompound machineNbt = nbt.getCompoundTag(TAG_MACHINE);
             machine.getState().readFromNBT(machineNbt);
@@ -283,6 +334,37 @@ public final class ModuleExecution extends AbstractModuleRotatable {
         }
     }
 
+    // --------------------------------------------------------------------- //
+    // Rotatable
+
+    @Override
+    public void setFacing(final Port facing) {
+        super.setFacing(facing);
+        machine.updateRotation();
+        isSleeping = false;
+    }
+
+    // --------------------------------------------------------------------- //
+    // PipeListener
+
+    @Override
+    public void onPipeChanged() {
+        isSleeping = false;
+        hasPipeChanged = true;
+    }
+
+    // --------------------------------------------------------------------- //
+    // StepListener
+
+    @Override
+    public void onStepsCompleted() {
+        if (hasUnsentState) {
+            hasUnsentState = false;
+            getCasing().markDirty();
+            sendState();
+        }
+    }
+
     // --------------------------------------------------------------------- //
 
     /**
@@ -300,6 +382,7 @@ public final class ModuleExecution extends AbstractModuleRotatable {
         }
 
         compileError = null;
+        isSleeping = false;
         try {
             machine.getState().clear();
             Compiler.compile(code, machine.getState());
@@ -312,28 +395,58 @@ public final class ModuleExecution extends AbstractModuleRotatable {
     }
 
     /**
-     * Send the current execution state to the client.
-     * <p>
-     * May be used to send the full state in case of larger changes, such as
-     * the program we're running being changed.
+     * Called on the client when receiving a compact state update sent by
+     * {@link #sendState()}.
      *
-     * @param full if <tt>true</tt>, the full machine state will be sent.
+     * @param message the message containing the state.
      */
-    private void sendData(final boolean full) {
-        final NBTTagCompound nbt = new NBTTagCompound();
-        nbt.setBoolean(TAG_FULL, full);
-        if (full) {
-            writeToNBT(nbt);
+    public void onState(final MessageExecutionState message) {
+        isSleeping = false;
+
+        final MachineState machineState = machine.getState();
+        machineState.pc = message.getPc();
+        machineState.acc = message.getAcc();
+        machineState.bak = message.getBak();
+        machineState.last = message.getLast();
+        if (message.getState() < State.VALUES.length) {
+            state = State.VALUES[message.getState()];
         } else {
-            nbt.setInteger(TAG_PC, machine.getState().pc);
-            nbt.setInteger(TAG_ACC, machine.getState().acc);
-            nbt.setInteger(TAG_BAK, machine.getState().bak);
-            machine.getState().last.ifPresent(last -> nbt.setString(TAG_LAST, last.name()));
-            nbt.setString(TAG_STATE, state.name());
+            TIS3D.getLog().warn("Invalid executable module state received.");
         }
+    }
+
+    /**
+     * Send the full machine state to the client, used in case of larger
+     * changes, such as the program we're running being changed.
+     */
+    private void sendData() {
+        final NBTTagCompound nbt = new NBTTagCompound();
+        writeToNBT(nbt);
         getCasing().sendData(getFace(), nbt);
     }
 
+    /**
+     * Send the current execution state to the client, i.e. the registers, the
+     * last port and the module state, in a compact message. This is sent very
+     * frequently while running, so avoid the overhead of building NBT for it.
+     */
+    private void sendState() {
+        // Modules installed by players live in the casing tile entity, which
+        // forwards to the actual casing implementation.
+        Casing casing = getCasing();
+        while (casing instanceof CasingProxy) {
+            casing = ((CasingProxy) casing).getCasing();
+        }
+        if (!(casing instanceof CasingImpl)) {
+            sendData();
+            return;
+        }
+
+        final MachineState machineState = machine.peekState();
+        final MessageExecutionState message = new MessageExecutionState(casing, getFace(), machineState.pc, machineState.acc, machineState.bak, machineState.last, state.ordinal());
+        ((CasingImpl) casing).sendMessage(getFace(), message);
+    }
+
     @SideOnly(Side.CLIENT)
     private void renderState(final MachineState machineState) {
         // Offset to start drawing at top left of inner area, slightly inset.
@@ -357,8 +470,8 @@ public final class ModuleExecution extends AbstractModuleRotatable {
         final int maxLines = 50 / (FontRendererAPI.getCharHeight() + 1);
         final int totalLines = machineState.code.length;
         final int currentLine;
-        if (machineState.lineNumbers.size() > 0) {
-            currentLine = machineState.lineNumbers.get(machineState.pc);
+        if (machineState.program.lineNumbers.size() > 0) {
+            currentLine = machineState.program.lineNumbers.get(machineState.pc);
         } else if (compileError != null) {
             currentLine = compileError.getLineNumber();
         } else {
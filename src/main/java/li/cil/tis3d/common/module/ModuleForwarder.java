@@ -4,7 +4,9 @@ import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
 import li.cil.tis3d.api.prefab.AbstractModule;
+import li.cil.tis3d.common.machine.ClosedModule;
 
 /**
  * This is a "virtual" module for internal use, forwarding data on all incoming
@@ -14,7 +16,7 @@ import li.cil.tis3d.api.prefab.AbstractModule;
  * Forwarders are always created in pairs, and each takes care of one of the two
  * directions data has to be moved.
  */
-public final class ModuleForwarder extends AbstractModule {
+public final class ModuleForwarder extends AbstractModule implements ClosedModule {
     // --------------------------------------------------------------------- //
     // Computed data
 
@@ -45,6 +47,14 @@ public final class ModuleForwarder extends AbstractModule {
         return (port == Port.LEFT || port == Port.RIGHT) ? port.getOpposite() : port;
     }
 
+    // --------------------------------------------------------------------- //
+    // ConfinedModule
+
+    @Override
+    public Module getLinkedModule() {
+        return other;
+    }
+
     // --------------------------------------------------------------------- //
     // Module
 
@@ -10,6 +10,8 @@ import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.AbstractModule;
 import li.cil.tis3d.client.render.TextureLoader;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.event.TickHandlerControllers;
+import li.cil.tis3d.common.machine.ConfinedModule;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.OpenGlHelper;
@@ -29,7 +31,7 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 import java.util.Deque;
 import java.util.LinkedList;
 
-public final class ModuleInfrared extends AbstractModule implements InfraredReceiver {
+public final class ModuleInfrared extends AbstractModule implements InfraredReceiver, ConfinedModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -197,6 +199,6 @@ public final class ModuleInfrared extends AbstractModule implements InfraredRece
         final Vec3 position = new Vec3(blockPos.getX() + 0.5, blockPos.getY() + 0.5, blockPos.getZ() + 0.5);
         final Vec3 direction = new Vec3(facing.getFrontOffsetX(), facing.getFrontOffsetY(), facing.getFrontOffsetZ());
 
-        InfraredAPI.sendPacket(world, position, direction, value);
+        TickHandlerControllers.INSTANCE.runOnServerThread(() -> InfraredAPI.sendPacket(world, position, direction, value));
     }
 }
@@ -1,5 +1,7 @@
 package li.cil.tis3d.common.module;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import li.cil.tis3d.api.API;
 import li.cil.tis3d.api.machine.Casing;
 import li.cil.tis3d.api.machine.Face;
@@ -7,6 +9,7 @@ import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.module.Redstone;
 import li.cil.tis3d.api.prefab.AbstractModuleRotatable;
+import li.cil.tis3d.common.event.TickHandlerControllers;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockRedstoneWire;
 import net.minecraft.block.state.IBlockState;
@@ -111,9 +114,14 @@ public final class ModuleRedstone extends AbstractModuleRotatable implements Red
     }
 
     @Override
-    public void onData(final NBTTagCompound nbt) {
-        output = nbt.getInteger(TAG_OUTPUT);
-        input = nbt.getInteger(TAG_INPUT);
+    public void onData(final ByteBuf data) {
+        // Data may come from clients, too, so don't trust its size.
+        if (data.readableBytes() < 2) {
+            return;
+        }
+
+        output = Math.max(0, Math.min(15, data.readByte()));
+        input = Math.max(0, Math.min(15, data.readByte()));
     }
 
     @SideOnly(Side.CLIENT)
@@ -221,8 +229,10 @@ public final class ModuleRedstone extends AbstractModuleRotatable implements Red
      */
     private void notifyNeighbors() {
         scheduledNeighborUpdate = false;
-        final Block blockType = getCasing().getCasingWorld().getBlockState(getCasing().getPosition()).getBlock();
-        getCasing().getCasingWorld().notifyNeighborsOfStateChange(getCasing().getPosition(), blockType);
+        TickHandlerControllers.INSTANCE.runOnServerThread(() -> {
+            final Block blockType = getCasing().getCasingWorld().getBlockState(getCasing().getPosition()).getBlock();
+            getCasing().getCasingWorld().notifyNeighborsOfStateChange(getCasing().getPosition(), blockType);
+        });
     }
 
     /**
@@ -235,6 +245,10 @@ public final class ModuleRedstone extends AbstractModuleRotatable implements Red
     private int computeRedstoneInput() {
         final EnumFacing facing = Face.toEnumFacing(getFace());
         final BlockPos inputPos = getCasing().getPosition().offset(facing);
+        if (!getCasing().getCasingWorld().isBlockLoaded(inputPos)) {
+            // Don't load chunks just to look for a signal.
+            return 0;
+        }
         final int input = getCasing().getCasingWorld().getRedstonePower(inputPos, facing);
         if (input >= 15) {
             return input;
@@ -275,8 +289,9 @@ public final class ModuleRedstone extends AbstractModuleRotatable implements Red
      * Send the current state of the module (to the client).
      */
     private void sendData() {
-        final NBTTagCompound nbt = new NBTTagCompound();
-        writeToNBT(nbt);
-        getCasing().sendData(getFace(), nbt);
+        final ByteBuf data = PooledByteBufAllocator.DEFAULT.buffer();
+        data.writeByte(output);
+        data.writeByte(input);
+        getCasing().sendData(getFace(), data);
     }
 }
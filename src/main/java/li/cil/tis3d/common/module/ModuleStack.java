@@ -1,5 +1,7 @@
 package li.cil.tis3d.common.module;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import li.cil.tis3d.api.API;
 import li.cil.tis3d.api.FontRendererAPI;
 import li.cil.tis3d.api.machine.Casing;
@@ -7,6 +9,7 @@ import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Pipe;
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.api.prefab.AbstractModuleRotatable;
+import li.cil.tis3d.common.machine.ClosedModule;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.OpenGlHelper;
@@ -23,7 +26,7 @@ import net.minecraftforge.fml.relauncher.SideOnly;
  * <p>
  * While it is not full, it will receive data on all ports and push them back.
  */
-public final class ModuleStack extends AbstractModuleRotatable {
+public final class ModuleStack extends AbstractModuleRotatable implements ClosedModule {
     // --------------------------------------------------------------------- //
     // Persisted data
 
@@ -81,8 +84,20 @@ public final class ModuleStack extends AbstractModuleRotatable {
     }
 
     @Override
-    public void onData(final NBTTagCompound nbt) {
-        readFromNBT(nbt);
+    public void onData(final ByteBuf data) {
+        // Data may come from clients, too, so don't trust its size.
+        if (!data.isReadable()) {
+            return;
+        }
+        final int newTop = Math.max(-1, Math.min(STACK_SIZE - 1, data.readByte()));
+        if (data.readableBytes() < (newTop + 1) * 2) {
+            return;
+        }
+
+        top = newTop;
+        for (int i = 0; i <= top; i++) {
+            stack[i] = data.readShort();
+        }
     }
 
     @SideOnly(Side.CLIENT)
@@ -225,9 +240,12 @@ public final class ModuleStack extends AbstractModuleRotatable {
     }
 
     private void sendData() {
-        final NBTTagCompound nbt = new NBTTagCompound();
-        writeToNBT(nbt);
-        getCasing().sendData(getFace(), nbt);
+        final ByteBuf data = PooledByteBufAllocator.DEFAULT.buffer();
+        data.writeByte(top);
+        for (int i = 0; i <= top; i++) {
+            data.writeShort(stack[i]);
+        }
+        getCasing().sendData(getFace(), data);
     }
 
     @SideOnly(Side.CLIENT)
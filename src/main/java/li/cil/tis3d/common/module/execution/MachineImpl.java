@@ -1,10 +1,12 @@
 package li.cil.tis3d.common.module.execution;
 
-import com.google.common.collect.ImmutableMap;
 import li.cil.tis3d.api.machine.Face;
 import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.Settings;
 import li.cil.tis3d.common.module.ModuleExecution;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeInterpreter;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
 import li.cil.tis3d.common.module.execution.target.Target;
 import li.cil.tis3d.common.module.execution.target.TargetInterface;
 import li.cil.tis3d.common.module.execution.target.TargetInterfaceAcc;
@@ -14,8 +16,6 @@ import li.cil.tis3d.common.module.execution.target.TargetInterfaceLast;
 import li.cil.tis3d.common.module.execution.target.TargetInterfaceNil;
 import li.cil.tis3d.common.module.execution.target.TargetInterfaceSide;
 
-import java.util.Map;
-
 /**
  * Track machine state and ease communicating with ports of an execution module.
  */
@@ -28,24 +28,57 @@ public final class MachineImpl implements Machine {
     // Computed data
 
     private final ModuleExecution module;
-    private final Map<Target, TargetInterface> interfaces;
+    private final TargetInterface[] interfaces;
+    private final TargetInterface[] rotatedInterfaces;
+    private final OpcodeInterpreter interpreter;
+
+    /**
+     * The number of steps of the register-only run of instructions the
+     * machine is currently fast-forwarding through, zero if it isn't.
+     */
+    private int fastForwardLength;
+
+    /**
+     * The number of steps of the current fast-forwarded run that elapsed.
+     */
+    private int fastForwardElapsed;
+
+    /**
+     * The machine state at the end of the current fast-forwarded run.
+     */
+    private int fastForwardPc, fastForwardAcc, fastForwardBak;
 
     // --------------------------------------------------------------------- //
 
     public MachineImpl(final ModuleExecution module, final Face face) {
         this.state = new MachineState();
         this.module = module;
-        this.interfaces = ImmutableMap.<Target, TargetInterface>builder().
-                put(Target.ACC, new TargetInterfaceAcc(this)).
-                put(Target.BAK, new TargetInterfaceBak(this)).
-                put(Target.NIL, new TargetInterfaceNil(this)).
-                put(Target.LEFT, new TargetInterfaceSide(this, module, face, Port.LEFT)).
-                put(Target.RIGHT, new TargetInterfaceSide(this, module, face, Port.RIGHT)).
-                put(Target.UP, new TargetInterfaceSide(this, module, face, Port.UP)).
-                put(Target.DOWN, new TargetInterfaceSide(this, module, face, Port.DOWN)).
-                put(Target.ANY, new TargetInterfaceAny(this, module, face)).
-                put(Target.LAST, new TargetInterfaceLast(this, module, face)).
-                build();
+        this.interfaces = new TargetInterface[Target.VALUES.length];
+        this.interfaces[Target.ACC.ordinal()] = new TargetInterfaceAcc(this);
+        this.interfaces[Target.BAK.ordinal()] = new TargetInterfaceBak(this);
+        this.interfaces[Target.NIL.ordinal()] = new TargetInterfaceNil(this);
+        this.interfaces[Target.LEFT.ordinal()] = new TargetInterfaceSide(this, module, face, Port.LEFT);
+        this.interfaces[Target.RIGHT.ordinal()] = new TargetInterfaceSide(this, module, face, Port.RIGHT);
+        this.interfaces[Target.UP.ordinal()] = new TargetInterfaceSide(this, module, face, Port.UP);
+        this.interfaces[Target.DOWN.ordinal()] = new TargetInterfaceSide(this, module, face, Port.DOWN);
+        this.interfaces[Target.ANY.ordinal()] = new TargetInterfaceAny(this, module, face);
+        this.interfaces[Target.LAST.ordinal()] = new TargetInterfaceLast(this, module, face);
+        this.rotatedInterfaces = new TargetInterface[Target.VALUES.length];
+        this.interpreter = new OpcodeInterpreter(this);
+
+        updateRotation();
+    }
+
+    /**
+     * Rebuild the lookup table used to resolve targets to interfaces.
+     * <p>
+     * This must be called whenever the facing of the execution module changes,
+     * to apply the new rotation to port targets.
+     */
+    public void updateRotation() {
+        for (final Target target : Target.VALUES) {
+            rotatedInterfaces[target.ordinal()] = interfaces[getRotatedTarget(target).ordinal()];
+        }
     }
 
     /**
@@ -55,6 +88,27 @@ public final class MachineImpl implements Machine {
      * @return <tt>true</tt> if the current instruction changed (even if it's the same again).
      */
     public boolean step() {
+        if (fastForwardLength > 0) {
+            stepFastForward();
+            return true;
+        }
+
+        if (Settings.useOpcodeInterpreter) {
+            if (beginFastForward()) {
+                stepFastForward();
+                return true;
+            }
+
+            final int pc = state.pc;
+            interpreter.step();
+
+            final boolean stateChanged = state.pc != pc;
+
+            state.validate();
+
+            return stateChanged;
+        }
+
         final Instruction instruction = getInstruction();
         if (instruction != null) {
             instruction.step(this);
@@ -76,20 +130,127 @@ public final class MachineImpl implements Machine {
      * @param port the port on which the write operation was completed.
      */
     public void onWriteCompleted(final Port port) {
+        catchUp();
+
+        if (Settings.useOpcodeInterpreter) {
+            interpreter.onWriteCompleted(port);
+            return;
+        }
+
         final Instruction instruction = getInstruction();
         if (instruction != null) {
             instruction.onWriteCompleted(this, port);
         }
     }
 
+    /**
+     * Whether the machine is currently fast-forwarding through a run of
+     * register-only instructions.
+     * <p>
+     * While this is the case, the machine state is only brought up-to-date
+     * when it is requested via {@link #getState()}, which ends fast-forwarding,
+     * or via {@link #peekState()}.
+     *
+     * @return <tt>true</tt> if the machine is fast-forwarding, <tt>false</tt> otherwise.
+     */
+    public boolean isFastForwarding() {
+        return fastForwardLength > 0;
+    }
+
+    /**
+     * Try to start fast-forwarding through the run of register-only
+     * instructions starting at the current instruction.
+     * <p>
+     * Such instructions only depend on the machine state, so their result can
+     * be computed in advance, in one go. The state is then left as it was at
+     * the start of the run until the same number of steps has elapsed.
+     *
+     * @return <tt>true</tt> if the machine is now fast-forwarding, <tt>false</tt> otherwise.
+     */
+    private boolean beginFastForward() {
+        final OpcodeProgram program = state.program.opcodes;
+        if (Settings.maxFastForwardSteps <= 0 || !program.isRegisterOnly(state.pc)) {
+            return false;
+        }
+
+        final int pc = state.pc;
+        final int acc = state.acc;
+        final int bak = state.bak;
+
+        int length = 0;
+        while (length < Settings.maxFastForwardSteps && program.isRegisterOnly(state.pc)) {
+            final int stepPc = state.pc;
+            interpreter.step();
+            if (state.pc == stepPc) {
+                // Jump to self, which changes nothing. Leave that to a normal
+                // step so it is reported as such.
+                break;
+            }
+            state.validate();
+            length++;
+        }
+
+        fastForwardPc = state.pc;
+        fastForwardAcc = state.acc;
+        fastForwardBak = state.bak;
+
+        state.pc = pc;
+        state.acc = acc;
+        state.bak = bak;
+
+        if (length == 0) {
+            return false;
+        }
+
+        fastForwardLength = length;
+        fastForwardElapsed = 0;
+        return true;
+    }
+
+    private void stepFastForward() {
+        if (++fastForwardElapsed == fastForwardLength) {
+            state.pc = fastForwardPc;
+            state.acc = fastForwardAcc;
+            state.bak = fastForwardBak;
+            fastForwardLength = 0;
+        }
+    }
+
+    /**
+     * Stop fast-forwarding, if we are, and bring the machine state up-to-date
+     * by replaying the steps that elapsed so far.
+     */
+    private void catchUp() {
+        if (fastForwardLength == 0) {
+            return;
+        }
+
+        final int elapsed = fastForwardElapsed;
+        fastForwardLength = 0;
+        replay(elapsed);
+    }
+
+    /**
+     * Replay the specified number of steps. Must only be called while not
+     * fast-forwarding, as the interpreter would end fast-forwarding otherwise.
+     *
+     * @param steps the number of steps to replay.
+     */
+    private void replay(final int steps) {
+        for (int step = 0; step < steps; step++) {
+            interpreter.step();
+            state.validate();
+        }
+    }
+
     /**
      * Utility method for safely retrieving the current instruction.
      *
      * @return the currently active instruction, or <tt>null</tt>.
      */
     private Instruction getInstruction() {
-        if (state.pc >= 0 && state.pc < state.instructions.size()) {
-            return state.instructions.get(state.pc);
+        if (state.pc >= 0 && state.pc < state.program.instructions.size()) {
+            return state.program.instructions.get(state.pc);
         }
         return null;
     }
@@ -99,13 +260,34 @@ public final class MachineImpl implements Machine {
 
     @Override
     public MachineState getState() {
+        catchUp();
+        return state;
+    }
+
+    /**
+     * Get the machine state for inspection, e.g. to synchronize it to clients.
+     * <p>
+     * Like {@link #getState()}, this brings the state up-to-date, but keeps
+     * fast-forwarding through the rest of the current run afterwards. The
+     * returned state <em>must not</em> be modified.
+     *
+     * @return the current state of the machine.
+     */
+    public MachineState peekState() {
+        if (fastForwardLength > 0 && fastForwardElapsed > 0) {
+            final int elapsed = fastForwardElapsed;
+            final int remaining = fastForwardLength - elapsed;
+            fastForwardLength = 0;
+            replay(elapsed);
+            fastForwardLength = remaining;
+            fastForwardElapsed = 0;
+        }
         return state;
     }
 
     @Override
     public TargetInterface getInterface(final Target target) {
-        final Target rotatedTarget = getRotatedTarget(target);
-        return interfaces.get(rotatedTarget);
+        return rotatedInterfaces[target.ordinal()];
     }
 
     // --------------------------------------------------------------------- //
@@ -1,17 +1,10 @@
 package li.cil.tis3d.common.module.execution;
 
 import li.cil.tis3d.api.machine.Port;
-import li.cil.tis3d.common.Settings;
-import li.cil.tis3d.common.item.ItemBookCode;
 import li.cil.tis3d.common.module.execution.compiler.Compiler;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
-import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import net.minecraft.nbt.NBTTagCompound;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -57,19 +50,16 @@ public final class MachineState {
     public static final String TAG_LAST = "last";
 
     /**
-     * List of instructions (the program) stored in the machine.
+     * The program stored in the machine, shared with all machines running the same code.
      */
-    public final List<Instruction> instructions = new ArrayList<>(Settings.maxLinesPerProgram);
+    public Program program = Program.EMPTY;
 
     /**
-     * List of labels and associated addresses.
+     * Whether a write started by the current move instruction completed before
+     * it was stepped again. Note that this can only ever happen if the machine
+     * is also stepped in the same update cycle, so it is not persisted.
      */
-    public final HashMap<String, Integer> labels = new HashMap<>(Settings.maxLinesPerProgram);
-
-    /**
-     * Instruction address to line number mapping.
-     */
-    public final HashMap<Integer, Integer> lineNumbers = new HashMap<>(Settings.maxLinesPerProgram);
+    public boolean isWriteCompleted;
 
     // --------------------------------------------------------------------- //
 
@@ -79,7 +69,7 @@ public final class MachineState {
     public void validate() {
         // Set to zero even when running out at the end to have programs
         // restart automatically.
-        if (pc < 0 || pc >= instructions.size()) {
+        if (pc < 0 || pc >= program.instructions.size()) {
             pc = 0;
         }
         acc = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, acc));
@@ -94,6 +84,7 @@ public final class MachineState {
         acc = 0;
         bak = 0;
         last = Optional.empty();
+        isWriteCompleted = false;
     }
 
     /**
@@ -102,10 +93,8 @@ public final class MachineState {
     public void clear() {
         reset();
 
-        instructions.clear();
-        labels.clear();
+        program = Program.EMPTY;
         code = null;
-        lineNumbers.clear();
     }
 
     // --------------------------------------------------------------------- //
@@ -113,7 +102,7 @@ public final class MachineState {
     public void readFromNBT(final NBTTagCompound nbt) {
         if (nbt.hasKey(TAG_CODE)) {
             try {
-                Compiler.compile(Arrays.asList(ItemBookCode.Data.PATTERN_LINES.split(nbt.getString(TAG_CODE))), this);
+                Compiler.compile(nbt.getString(TAG_CODE), this);
             } catch (final ParseException ignored) {
                 // Silent because this is also used to send code to the
                 // clients to visualize errors, and code is also saved
@@ -0,0 +1,60 @@
+package li.cil.tis3d.common.module.execution;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled TIS-100 assembly program.
+ * <p>
+ * Programs are immutable and shared between all machines running the same
+ * code, all per-machine state lives in the {@link MachineState}.
+ */
+public final class Program {
+    /**
+     * The empty program, used by machines without code.
+     */
+    public static final Program EMPTY = new Program(ImmutableList.of(), ImmutableMap.of(), ImmutableMap.of());
+
+    /**
+     * List of instructions (the program).
+     */
+    public final List<Instruction> instructions;
+
+    /**
+     * List of labels and associated addresses.
+     */
+    public final Map<String, Integer> labels;
+
+    /**
+     * Instruction address to line number mapping.
+     */
+    public final Map<Integer, Integer> lineNumbers;
+
+    /**
+     * The instructions lowered into packed opcodes.
+     */
+    public final OpcodeProgram opcodes;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Create a new program from the specified compiler output.
+     * <p>
+     * All labels referenced by jumps must exist in the specified labels.
+     *
+     * @param instructions the instructions of the program.
+     * @param labels       the labels and associated addresses.
+     * @param lineNumbers  the instruction address to line number mapping.
+     */
+    public Program(final List<Instruction> instructions, final Map<String, Integer> labels, final Map<Integer, Integer> lineNumbers) {
+        this.instructions = ImmutableList.copyOf(instructions);
+        this.labels = ImmutableMap.copyOf(labels);
+        this.lineNumbers = ImmutableMap.copyOf(lineNumbers);
+        this.opcodes = OpcodeProgram.lower(this.instructions, this.labels);
+    }
+}
@@ -0,0 +1,50 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+
+import java.util.List;
+
+/**
+ * The result of compiling a single line of code.
+ * <p>
+ * Results do not depend on the position of the line in the program, so they
+ * can be reused for lines with the same content. Exceptions and validators
+ * refer to line zero and are moved to the actual line by the {@link Compiler}.
+ */
+final class CompiledLine {
+    /**
+     * The error in the line, if any, in which case all other fields are unset.
+     */
+    final ParseException error;
+
+    /**
+     * The label defined on the line, or <tt>null</tt>.
+     */
+    final String label;
+
+    /**
+     * The instruction on the line, or <tt>null</tt> if the line is blank.
+     */
+    final Instruction instruction;
+
+    /**
+     * Validators registered while compiling the instruction.
+     */
+    final List<Validator> validators;
+
+    // --------------------------------------------------------------------- //
+
+    CompiledLine(final String label, final Instruction instruction, final List<Validator> validators) {
+        this.error = null;
+        this.label = label;
+        this.instruction = instruction;
+        this.validators = validators;
+    }
+
+    CompiledLine(final ParseException error) {
+        this.error = error;
+        this.label = null;
+        this.instruction = null;
+        this.validators = null;
+    }
+}
@@ -1,11 +1,14 @@
 package li.cil.tis3d.common.module.execution.compiler;
 
-import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.item.ItemBookCode;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Program;
 import li.cil.tis3d.common.module.execution.compiler.instruction.InstructionEmitter;
 import li.cil.tis3d.common.module.execution.compiler.instruction.InstructionEmitterLabel;
 import li.cil.tis3d.common.module.execution.compiler.instruction.InstructionEmitterMissing;
@@ -41,11 +44,12 @@ import li.cil.tis3d.common.module.execution.instruction.InstructionSwap;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Compiles TIS-100 assembly code into instructions.
@@ -57,12 +61,32 @@ public final class Compiler {
      * Parse the specified piece of assembly code into the specified machine state.
      * <p>
      * Note that the machine state will be hard reset.
+     * <p>
+     * Compiled programs are cached by their source, so all machines running
+     * the same code share the same {@link Program} instance.
      *
      * @param code  the code to parse and compile.
      * @param state the machine state to store the instructions and debug info in.
      * @throws ParseException if the specified code contains syntax errors.
      */
     public static void compile(final Iterable<String> code, final MachineState state) throws ParseException {
+        compile(code, state, null);
+    }
+
+    /**
+     * Parse the specified piece of assembly code into the specified machine state,
+     * reusing the results for lines that have been compiled before.
+     * <p>
+     * This is intended for code that is being edited, where lines usually
+     * change one at a time.
+     *
+     * @param code  the code to parse and compile.
+     * @param state the machine state to store the instructions and debug info in.
+     * @param cache the cache for compiled lines, or <tt>null</tt> to compile all lines.
+     * @throws ParseException if the specified code contains syntax errors.
+     * @see #compile(Iterable, MachineState)
+     */
+    public static void compile(final Iterable<String> code, final MachineState state, final LineCache cache) throws ParseException {
         state.clear();
 
         final String[] lines = Iterables.toArray(code, String.class);
@@ -75,97 +99,198 @@ public final class Compiler {
 
         state.code = lines;
 
+        // Lines with line breaks of their own would share their source with
+        // other code, so only cache code without any.
+        if (Arrays.stream(lines).anyMatch(line -> line.indexOf('\n') >= 0)) {
+            state.program = compile(lines, cache);
+            return;
+        }
+
+        final String source = String.join("\n", lines);
+        Program program = PROGRAM_CACHE.getIfPresent(source);
+        if (program == null) {
+            program = compile(lines, cache);
+            PROGRAM_CACHE.put(source, program);
+        }
+        state.program = program;
+    }
+
+    /**
+     * Parse the specified piece of assembly code into the specified machine state.
+     * <p>
+     * This takes the code as a single string, with lines separated by newlines,
+     * as it is stored in NBT. If the code has been compiled before, this will
+     * not parse it again, but directly use the cached program.
+     *
+     * @param code  the code to parse and compile.
+     * @param state the machine state to store the instructions and debug info in.
+     * @throws ParseException if the specified code contains syntax errors.
+     * @see #compile(Iterable, MachineState)
+     */
+    public static void compile(final String code, final MachineState state) throws ParseException {
+        final String[] lines = ItemBookCode.Data.PATTERN_LINES.split(code);
+        final Program program = PROGRAM_CACHE.getIfPresent(code);
+        if (program == null) {
+            compile(Arrays.asList(lines), state);
+            return;
+        }
+
+        state.clear();
+
+        // The program may have been compiled with other limits, so enforce
+        // the current ones like a full compile would.
+        if (lines.length > Settings.maxLinesPerProgram) {
+            throw new ParseException(Constants.MESSAGE_TOO_MANY_LINES, Settings.maxLinesPerProgram, 0, 0);
+        }
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            if (lines[lineNumber].length() > Settings.maxColumnsPerLine) {
+                throw new ParseException(Constants.MESSAGE_LINE_TOO_LONG, lineNumber, Settings.maxColumnsPerLine, Settings.maxColumnsPerLine);
+            }
+        }
+
+        // Cache keys are already normalized, so we can take the lines as-is.
+        state.code = lines;
+        state.program = program;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Parse the specified normalized lines of assembly code into a new program.
+     *
+     * @param lines the lines to parse and compile.
+     * @param cache the cache for compiled lines, or <tt>null</tt> to compile all lines.
+     * @return the compiled program.
+     * @throws ParseException if the specified code contains syntax errors.
+     */
+    private static Program compile(final String[] lines, final LineCache cache) throws ParseException {
+        final List<Instruction> instructions = new ArrayList<>(lines.length);
+        final Map<String, Integer> labels = new HashMap<>();
+        final Map<Integer, Integer> lineNumbers = new HashMap<>(lines.length);
+
+        // Parse all lines into the program.
+        final Tokenizer tokens = new Tokenizer();
+        final List<Validator> validators = new ArrayList<>();
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            final CompiledLine line = cache != null ? cache.get(lines[lineNumber], tokens) : compileLine(lines[lineNumber], tokens);
+            if (line.error != null) {
+                throw relocate(line.error, lineNumber);
+            }
+
+            // Store the label, if any, and the address it represents.
+            if (line.label != null) {
+                labels.put(line.label, instructions.size());
+            }
+
+            if (line.instruction != null) {
+                // Remember line numbers for debugging.
+                lineNumbers.put(instructions.size(), lineNumber);
+
+                // Store the instruction in the program (after just to skip the -1 :P).
+                instructions.add(line.instruction);
+            }
+
+            for (final Validator validator : line.validators) {
+                validators.add(relocate(validator, lineNumber));
+            }
+        }
+
+        // Run all registered validators as a post-processing step. This is used
+        // to check jumps reference existing labels, for example.
+        for (final Validator validator : validators) {
+            validator.accept(labels);
+        }
+
+        return new Program(instructions, labels, lineNumbers);
+    }
+
+    /**
+     * Compile a single normalized line of code, as if it were the first line.
+     *
+     * @param line   the line to compile.
+     * @param tokens the tokenizer to use for splitting the line.
+     * @return the compiled line.
+     */
+    static CompiledLine compileLine(final String line, final Tokenizer tokens) {
         try {
-            // Parse all lines into the specified machine state.
-            final List<Validator> validators = new ArrayList<>();
-            for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
-                // Enforce max line length.
-                if (lines[lineNumber].length() > Settings.maxColumnsPerLine) {
-                    throw new ParseException(Constants.MESSAGE_LINE_TOO_LONG, lineNumber, Settings.maxColumnsPerLine, Settings.maxColumnsPerLine);
-                }
-
-                // Get current line, strip comments, trim whitespace and uppercase.
-                final Matcher matcher = PATTERN_COMMENT.matcher(lines[lineNumber]);
-                final String line = matcher.replaceFirst("").trim();
-
-                // Extract a label, if any, pass the rest onto the instruction parser.
-                parseInstruction(parseLabel(line, state), state, lineNumber, validators);
+            // Enforce max line length.
+            if (line.length() > Settings.maxColumnsPerLine) {
+                throw new ParseException(Constants.MESSAGE_LINE_TOO_LONG, 0, Settings.maxColumnsPerLine, Settings.maxColumnsPerLine);
             }
 
-            // Run all registered validators as a post-processing step. This is used
-            // to check jumps reference existing labels, for example.
-            for (final Validator validator : validators) {
-                validator.accept(state);
+            // Split the line into label and instruction tokens, skipping comments and whitespace.
+            if (!tokens.tokenize(line, 0)) {
+                return new CompiledLine(tokens.getLabel(), null, Collections.emptyList());
             }
+
+            final List<Validator> validators = new ArrayList<>();
+            final Instruction instruction = parseInstruction(tokens, 0, validators);
+            return new CompiledLine(tokens.getLabel(), instruction, validators);
         } catch (final ParseException e) {
-            state.clear();
-            state.code = lines;
-            throw e;
+            return new CompiledLine(e);
         }
     }
 
-    // --------------------------------------------------------------------- //
+    /**
+     * Move an exception generated for line zero to the specified line.
+     *
+     * @param e          the exception to move.
+     * @param lineNumber the line to move the exception to.
+     * @return the exception for the specified line.
+     */
+    private static ParseException relocate(final ParseException e, final int lineNumber) {
+        if (lineNumber == 0) {
+            return e;
+        }
+        return new ParseException(e.getMessage(), lineNumber, e.getStart(), e.getEnd());
+    }
 
     /**
-     * Look for a label on the specified line and store it if present.
+     * Move a validator generated for line zero to the specified line.
      *
-     * @param line  the line to parse.
-     * @param state the machine state to store the label in.
-     * @return the remainder of the line, or the full line if there was no label.
+     * @param validator  the validator to move.
+     * @param lineNumber the line to move the validator to.
+     * @return the validator for the specified line.
      */
-    private static String parseLabel(final String line, final MachineState state) {
-        final Matcher matcher = PATTERN_LABEL.matcher(line);
-        if (matcher.matches()) {
-            // Got a label, store it and the address it represents.
-            final String label = matcher.group("label");
-            state.labels.put(label, state.instructions.size());
-            // Return the remainder of the line.
-            return matcher.group("rest");
-        } else {
-            // No label, return line as-is.
-            return line;
+    private static Validator relocate(final Validator validator, final int lineNumber) {
+        if (lineNumber == 0) {
+            return validator;
         }
+        return labels -> {
+            try {
+                validator.accept(labels);
+            } catch (final ParseException e) {
+                throw relocate(e, lineNumber);
+            }
+        };
     }
 
     /**
-     * Look for an instruction on the specified line and store it if present.
+     * Compile the instruction on the last tokenized line.
      *
-     * @param line       the line to parse.
-     * @param state      the machine state to store the generated instruction in.
+     * @param tokens     the tokens of the line.
      * @param lineNumber the number of the line we're parsing (for exceptions).
      * @param validators list of validators instruction emitters may add to.
+     * @return the compiled instruction.
      * @throws ParseException if there was a syntax error.
      */
-    private static void parseInstruction(final String line, final MachineState state, final int lineNumber, final List<Validator> validators) throws ParseException {
-        // Skip blank lines and empty remainders of label parsing.
-        if (Strings.isNullOrEmpty(line)) return;
-
-        final Matcher matcher = PATTERN_INSTRUCTION.matcher(line);
-        if (matcher.matches()) {
-            // Got an instruction, process arguments and instantiate it.
-            final Instruction instruction = EMITTER_MAP.getOrDefault(matcher.group("name"), EMITTER_MISSING).
-                    compile(matcher, lineNumber, validators);
-
-            // Remember line numbers for debugging.
-            state.lineNumbers.put(state.instructions.size(), lineNumber);
-
-            // Store the instruction in the machine state (after just to skip the -1 :P).
-            state.instructions.add(instruction);
-        } else {
-            // This should be pretty much impossible...
-            throw new ParseException(Constants.MESSAGE_UNEXPECTED_TOKEN, lineNumber, 0, 0);
-        }
+    private static Instruction parseInstruction(final Tokenizer tokens, final int lineNumber, final List<Validator> validators) throws ParseException {
+        return EMITTER_MAP.getOrDefault(tokens.get(Tokenizer.NAME), EMITTER_MISSING).
+                compile(tokens, lineNumber, validators);
     }
 
     // --------------------------------------------------------------------- //
 
-    private static final Pattern PATTERN_COMMENT = Pattern.compile("#.*$");
-    private static final Pattern PATTERN_LABEL = Pattern.compile("(?<label>[^:]+)\\s*:\\s*(?<rest>.*)");
-    private static final Pattern PATTERN_INSTRUCTION = Pattern.compile("^(?<name>\\S+)\\s*(?<arg1>[^,\\s]+)?\\s*,?\\s*(?<arg2>[^,\\s]+)?\\s*(?<excess>.+)?$");
     private static final Instruction INSTRUCTION_NOP = new InstructionAdd(Target.NIL);
     private static final InstructionEmitter EMITTER_MISSING = new InstructionEmitterMissing();
     private static final Map<String, InstructionEmitter> EMITTER_MAP;
 
+    /**
+     * Compiled programs by normalized source. Programs are only kept alive by
+     * the machines running them, so code that is no longer used gets dropped.
+     */
+    private static final Cache<String, Program> PROGRAM_CACHE = CacheBuilder.newBuilder().weakValues().build();
+
     static {
         final ImmutableMap.Builder<String, InstructionEmitter> builder = ImmutableMap.<String, InstructionEmitter>builder();
 
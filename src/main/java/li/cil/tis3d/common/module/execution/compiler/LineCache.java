@@ -0,0 +1,44 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.Settings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the results of compiling individual lines of code by their content.
+ * <p>
+ * Used to quickly recompile code that is being edited, where usually only
+ * a single line changes between two compilations. Only the changed lines
+ * are parsed again, the results for all other lines are reused.
+ */
+public final class LineCache {
+    /**
+     * Compiled lines by their normalized content, least recently used first.
+     */
+    private final Map<String, CompiledLine> lines = new LinkedHashMap<String, CompiledLine>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CompiledLine> eldest) {
+            // Keep the current program and some recent edits.
+            return size() > Settings.maxLinesPerProgram * 2;
+        }
+    };
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Get the compiled version of the specified line, compiling it if necessary.
+     *
+     * @param line   the normalized line to get the compiled version of.
+     * @param tokens the tokenizer to use for compiling the line.
+     * @return the compiled line.
+     */
+    CompiledLine get(final String line, final Tokenizer tokens) {
+        CompiledLine result = lines.get(line);
+        if (result == null) {
+            result = Compiler.compileLine(line, tokens);
+            lines.put(line, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,259 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.Constants;
+
+/**
+ * Splits single lines of TIS-100 assembly code into their tokens.
+ * <p>
+ * A line consists of an optional label, followed by an instruction name and
+ * up to two arguments, optionally separated by a comma. Anything following
+ * the second argument is collected as excess. Comments are stripped.
+ * <p>
+ * Token positions are tracked as columns instead of creating substrings for
+ * each token, and the instance is reused for all lines of a program, so
+ * that tokenizing a line performs (next to) no allocations. Columns are
+ * relative to the start of the instruction, i.e. they do not include the
+ * label, if any.
+ */
+public final class Tokenizer {
+    /**
+     * The name of the instruction.
+     */
+    public static final int NAME = 0;
+
+    /**
+     * The first argument of the instruction.
+     */
+    public static final int ARG1 = 1;
+
+    /**
+     * The second argument of the instruction.
+     */
+    public static final int ARG2 = 2;
+
+    /**
+     * Anything following the second argument.
+     */
+    public static final int EXCESS = 3;
+
+    // --------------------------------------------------------------------- //
+
+    private final int[] starts = new int[EXCESS + 1];
+    private final int[] ends = new int[EXCESS + 1];
+    private String text;
+    private int offset;
+    private int end;
+    private String label;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Tokenize the specified line of code.
+     *
+     * @param line       the line to tokenize.
+     * @param lineNumber the number of the line we're parsing (for exceptions).
+     * @return <tt>true</tt> if the line contains an instruction, <tt>false</tt> if it is blank (save for a label).
+     * @throws ParseException if the line cannot be tokenized.
+     */
+    public boolean tokenize(final String line, final int lineNumber) throws ParseException {
+        text = line;
+        offset = 0;
+        end = line.length();
+        label = null;
+
+        stripComment();
+        trim();
+        parseLabel();
+
+        if (offset == end) {
+            return false;
+        }
+
+        // Name, which is anything up to the first whitespace. Trimming and
+        // label parsing guarantee we start with non-whitespace, except for
+        // some pathological inputs.
+        int position = offset;
+        if (isWhitespace(text.charAt(position))) {
+            throw new ParseException(Constants.MESSAGE_UNEXPECTED_TOKEN, lineNumber, 0, 0);
+        }
+        position = parseToken(NAME, position, true);
+
+        // Arguments, optionally separated by a comma.
+        position = parseToken(ARG1, skipWhitespace(position), false);
+        position = skipWhitespace(position);
+        if (position < end && text.charAt(position) == ',') {
+            position++;
+        }
+        position = parseToken(ARG2, skipWhitespace(position), false);
+        position = skipWhitespace(position);
+
+        // Everything else is excess, but may not span multiple lines.
+        if (position < end) {
+            if (indexOfLineTerminator(position, end) >= 0) {
+                throw new ParseException(Constants.MESSAGE_UNEXPECTED_TOKEN, lineNumber, 0, 0);
+            }
+            starts[EXCESS] = position;
+            ends[EXCESS] = end;
+        } else {
+            starts[EXCESS] = -1;
+            ends[EXCESS] = -1;
+        }
+
+        return true;
+    }
+
+    /**
+     * The label defined on the last tokenized line.
+     *
+     * @return the label, or <tt>null</tt> if there was none.
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Get the value of the specified token of the last tokenized line.
+     *
+     * @param token the token to get the value of.
+     * @return the value of the token, or <tt>null</tt> if it is not present.
+     */
+    public String get(final int token) {
+        return starts[token] >= 0 ? text.substring(starts[token], ends[token]) : null;
+    }
+
+    /**
+     * Get the start column of the specified token of the last tokenized line.
+     *
+     * @param token the token to get the start of.
+     * @return the start column of the token, or <tt>-1</tt> if it is not present.
+     */
+    public int start(final int token) {
+        return starts[token] >= 0 ? starts[token] - offset : -1;
+    }
+
+    /**
+     * Get the end column of the specified token of the last tokenized line.
+     *
+     * @param token the token to get the end of.
+     * @return the end column of the token, or <tt>-1</tt> if it is not present.
+     */
+    public int end(final int token) {
+        return ends[token] >= 0 ? ends[token] - offset : -1;
+    }
+
+    /**
+     * Get the end column of the instruction of the last tokenized line.
+     *
+     * @return the end column of the instruction.
+     */
+    public int end() {
+        return end - offset;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Remove a comment, i.e. everything from a <tt>#</tt> up to the end of
+     * the line, if present.
+     * <p>
+     * Comments may be followed by one trailing line terminator, but may not
+     * span multiple lines, i.e. a <tt>#</tt> followed by more than that does
+     * not start a comment.
+     */
+    private void stripComment() {
+        int start = text.indexOf('#');
+        while (start >= 0) {
+            final int terminator = indexOfLineTerminator(start + 1, end);
+            if (terminator < 0) {
+                end = start;
+                return;
+            }
+            if (isFinalLineTerminator(terminator)) {
+                // Keep the terminator, this is hardly ever going to happen,
+                // so just build the actual remaining line.
+                text = text.substring(0, start) + text.substring(terminator);
+                end = text.length();
+                return;
+            }
+            start = text.indexOf('#', terminator);
+        }
+    }
+
+    /**
+     * Remove leading and trailing whitespace, the same way {@link String#trim()} does.
+     */
+    private void trim() {
+        while (offset < end && text.charAt(offset) <= ' ') {
+            offset++;
+        }
+        while (end > offset && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+    }
+
+    /**
+     * Look for a label at the start of the line and skip it if present.
+     */
+    private void parseLabel() {
+        final int colon = text.indexOf(':', offset);
+        if (colon <= offset || colon >= end) {
+            return;
+        }
+
+        int rest = colon + 1;
+        while (rest < end && isWhitespace(text.charAt(rest))) {
+            rest++;
+        }
+        if (indexOfLineTerminator(rest, end) >= 0) {
+            return;
+        }
+
+        label = text.substring(offset, colon);
+        offset = rest;
+    }
+
+    private int parseToken(final int token, final int start, final boolean allowComma) {
+        int position = start;
+        while (position < end && !isWhitespace(text.charAt(position)) && (allowComma || text.charAt(position) != ',')) {
+            position++;
+        }
+        if (position > start) {
+            starts[token] = start;
+            ends[token] = position;
+        } else {
+            starts[token] = -1;
+            ends[token] = -1;
+        }
+        return position;
+    }
+
+    private int skipWhitespace(final int start) {
+        int position = start;
+        while (position < end && isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private int indexOfLineTerminator(final int start, final int end) {
+        for (int position = start; position < end; position++) {
+            if (isLineTerminator(text.charAt(position))) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isFinalLineTerminator(final int position) {
+        final int remaining = end - position;
+        return remaining == 1 || (remaining == 2 && text.charAt(position) == '\r' && text.charAt(position + 1) == '\n');
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
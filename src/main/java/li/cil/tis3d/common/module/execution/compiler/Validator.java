@@ -1,6 +1,6 @@
 package li.cil.tis3d.common.module.execution.compiler;
 
-import li.cil.tis3d.common.module.execution.MachineState;
+import java.util.Map;
 
 /**
  * Type of validators instruction emitters may register to be run as a post-processing step.
@@ -10,10 +10,10 @@ public interface Validator {
     /**
      * Called from the {@link Compiler} after all lines have been parsed and
      * all instructions have been generated to allow validation of the
-     * generated machine state.
+     * generated program.
      *
-     * @param state the machine state to validate.
-     * @throws ParseException if the generated state is invalid in some way.
+     * @param labels the labels of the program and their addresses.
+     * @throws ParseException if the generated program is invalid in some way.
      */
-    void accept(MachineState state) throws ParseException;
+    void accept(Map<String, Integer> labels) throws ParseException;
 }
@@ -2,62 +2,59 @@ package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.target.Target;
 
-import java.util.regex.Matcher;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Base implementation for instruction emitters.
  */
 abstract class AbstractInstructionEmitter implements InstructionEmitter {
-    protected static void checkExcess(final int lineNumber, final Matcher matcher, final String name) throws ParseException {
-        final int start = matcher.start(name);
+    /**
+     * Lookup table for targets by name, to avoid exceptions from {@link Enum#valueOf}
+     * for immediate values.
+     */
+    private static final Map<String, Target> TARGETS = Arrays.stream(Target.VALUES).collect(Collectors.toMap(Target::name, Function.identity()));
+
+    protected static void checkExcess(final int lineNumber, final Tokenizer tokens, final int token) throws ParseException {
+        final int start = tokens.start(token);
         if (start >= 0) {
-            throw new ParseException(Constants.MESSAGE_EXCESS_TOKENS, lineNumber, start, matcher.end());
+            throw new ParseException(Constants.MESSAGE_EXCESS_TOKENS, lineNumber, start, tokens.end());
         }
     }
 
-    protected static String checkArg(final int lineNumber, final Matcher matcher, final String name, final String previous) throws ParseException {
-        final String arg = matcher.group(name);
+    protected static String checkArg(final int lineNumber, final Tokenizer tokens, final int token, final int previous) throws ParseException {
+        final String arg = tokens.get(token);
         if (arg == null) {
-            throw new ParseException(Constants.MESSAGE_MISSING_PARAMETER, lineNumber, matcher.end(previous) + 1, matcher.end(previous) + 1);
+            throw new ParseException(Constants.MESSAGE_MISSING_PARAMETER, lineNumber, tokens.end(previous) + 1, tokens.end(previous) + 1);
         }
         return arg;
     }
 
     protected static Target checkTarget(final int lineNumber, final String name, final int start, final int end) throws ParseException {
-        try {
-            final Target target = Enum.valueOf(Target.class, name);
-            if (!Target.VALID_TARGETS.contains(target)) {
-                throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
-            }
-            return target;
-        } catch (final IllegalArgumentException ex) {
+        final Target target = TARGETS.get(name);
+        if (target == null || !Target.VALID_TARGETS.contains(target)) {
             throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
         }
+        return target;
     }
 
     protected static Object checkTargetOrInt(final int lineNumber, final String name, final int start, final int end) throws ParseException {
-        try {
-            final Target target = Enum.valueOf(Target.class, name);
+        final Target target = TARGETS.get(name);
+        if (target != null) {
             if (!Target.VALID_TARGETS.contains(target)) {
                 throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
             }
             return target;
-        } catch (final IllegalArgumentException ex) {
-            if (isInteger(name)) {
-                return Integer.decode(name);
-            }
-            throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
         }
-    }
-
-    private static boolean isInteger(final String value) {
         try {
-            Integer.decode(value);
-            return true;
+            return Integer.decode(name);
         } catch (final NumberFormatException ex) {
-            return false;
+            throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
         }
     }
 }
@@ -1,14 +1,14 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.Constants;
-import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public final class InstructionEmitterLabel extends AbstractInstructionEmitter {
     private final String name;
@@ -25,18 +25,20 @@ public final class InstructionEmitterLabel extends AbstractInstructionEmitter {
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final List<Validator> validators) throws ParseException {
-        final String label = checkArg(lineNumber, matcher, "arg1", "name");
-        checkExcess(lineNumber, matcher, "arg2");
+    public Instruction compile(final Tokenizer tokens, final int lineNumber, final List<Validator> validators) throws ParseException {
+        final String label = checkArg(lineNumber, tokens, Tokenizer.ARG1, Tokenizer.NAME);
+        checkExcess(lineNumber, tokens, Tokenizer.ARG2);
 
-        validators.add(state -> validateLabel(state, label, matcher, lineNumber));
+        final int start = tokens.start(Tokenizer.ARG1);
+        final int end = tokens.end(Tokenizer.ARG1);
+        validators.add(labels -> validateLabel(labels, label, lineNumber, start, end));
 
         return constructor.apply(label);
     }
 
-    private static void validateLabel(final MachineState state, final String label, final Matcher matcher, final int lineNumber) throws ParseException {
-        if (!state.labels.containsKey(label)) {
-            throw new ParseException(Constants.MESSAGE_NO_SUCH_LABEL, lineNumber, matcher.start("arg1"), matcher.end("arg1"));
+    private static void validateLabel(final Map<String, Integer> labels, final String label, final int lineNumber, final int start, final int end) throws ParseException {
+        if (!labels.containsKey(label)) {
+            throw new ParseException(Constants.MESSAGE_NO_SUCH_LABEL, lineNumber, start, end);
         }
     }
 }
@@ -2,11 +2,11 @@ package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.Constants;
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 
 import java.util.List;
-import java.util.regex.Matcher;
 
 public final class InstructionEmitterMissing implements InstructionEmitter {
     @Override
@@ -15,7 +15,7 @@ public final class InstructionEmitterMissing implements InstructionEmitter {
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final List<Validator> validators) throws ParseException {
-        throw new ParseException(Constants.MESSAGE_UNKNOWN_INSTRUCTION, lineNumber, matcher.start("name"), matcher.end("name"));
+    public Instruction compile(final Tokenizer tokens, final int lineNumber, final List<Validator> validators) throws ParseException {
+        throw new ParseException(Constants.MESSAGE_UNKNOWN_INSTRUCTION, lineNumber, tokens.start(Tokenizer.NAME), tokens.end(Tokenizer.NAME));
     }
 }
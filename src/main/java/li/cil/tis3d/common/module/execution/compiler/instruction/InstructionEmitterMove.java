@@ -1,6 +1,7 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.instruction.InstructionMove;
@@ -8,7 +9,6 @@ import li.cil.tis3d.common.module.execution.instruction.InstructionMoveImmediate
 import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.List;
-import java.util.regex.Matcher;
 
 public final class InstructionEmitterMove extends AbstractInstructionEmitter {
     @Override
@@ -17,14 +17,14 @@ public final class InstructionEmitterMove extends AbstractInstructionEmitter {
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final List<Validator> validators) throws ParseException {
+    public Instruction compile(final Tokenizer tokens, final int lineNumber, final List<Validator> validators) throws ParseException {
         final Object src = checkTargetOrInt(lineNumber,
-                checkArg(lineNumber, matcher, "arg1", "name"),
-                matcher.start("arg1"), matcher.end("arg1"));
+                checkArg(lineNumber, tokens, Tokenizer.ARG1, Tokenizer.NAME),
+                tokens.start(Tokenizer.ARG1), tokens.end(Tokenizer.ARG1));
         final Target dst = checkTarget(lineNumber,
-                checkArg(lineNumber, matcher, "arg2", "arg1"),
-                matcher.start("arg2"), matcher.end("arg2"));
-        checkExcess(lineNumber, matcher, "excess");
+                checkArg(lineNumber, tokens, Tokenizer.ARG2, Tokenizer.ARG1),
+                tokens.start(Tokenizer.ARG2), tokens.end(Tokenizer.ARG2));
+        checkExcess(lineNumber, tokens, Tokenizer.EXCESS);
 
         if (src instanceof Target) {
             return new InstructionMove((Target) src, dst);
@@ -1,13 +1,13 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 import java.util.List;
 import java.util.function.Function;
-import java.util.regex.Matcher;
 
 public class InstructionEmitterTargetOrImmediate extends AbstractInstructionEmitter {
     private final String name;
@@ -26,11 +26,11 @@ public class InstructionEmitterTargetOrImmediate extends AbstractInstructionEmit
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final List<Validator> validators) throws ParseException {
+    public Instruction compile(final Tokenizer tokens, final int lineNumber, final List<Validator> validators) throws ParseException {
         final Object src = checkTargetOrInt(lineNumber,
-                checkArg(lineNumber, matcher, "arg1", "name"),
-                matcher.start("arg1"), matcher.end("arg1"));
-        checkExcess(lineNumber, matcher, "arg2");
+                checkArg(lineNumber, tokens, Tokenizer.ARG1, Tokenizer.NAME),
+                tokens.start(Tokenizer.ARG1), tokens.end(Tokenizer.ARG1));
+        checkExcess(lineNumber, tokens, Tokenizer.ARG2);
 
         if (src instanceof Target) {
             return constructorTarget.apply((Target) src);
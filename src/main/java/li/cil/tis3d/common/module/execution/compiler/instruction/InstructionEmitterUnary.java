@@ -1,12 +1,12 @@
 package li.cil.tis3d.common.module.execution.compiler.instruction;
 
 import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.compiler.Tokenizer;
 import li.cil.tis3d.common.module.execution.compiler.Validator;
 import li.cil.tis3d.common.module.execution.instruction.Instruction;
 
 import java.util.List;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
 
 public class InstructionEmitterUnary extends AbstractInstructionEmitter {
     private final String name;
@@ -23,8 +23,8 @@ public class InstructionEmitterUnary extends AbstractInstructionEmitter {
     }
 
     @Override
-    public Instruction compile(final Matcher matcher, final int lineNumber, final List<Validator> validators) throws ParseException {
-        checkExcess(lineNumber, matcher, "arg1");
+    public Instruction compile(final Tokenizer tokens, final int lineNumber, final List<Validator> validators) throws ParseException {
+        checkExcess(lineNumber, tokens, Tokenizer.ARG1);
 
         return constructor.get();
     }
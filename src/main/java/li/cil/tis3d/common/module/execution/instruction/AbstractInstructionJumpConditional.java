@@ -14,7 +14,7 @@ abstract class AbstractInstructionJumpConditional implements Instruction {
     public final void step(final Machine machine) {
         final MachineState state = machine.getState();
         if (isConditionTrue(state)) {
-            state.pc = state.labels.get(label);
+            state.pc = state.program.labels.get(label);
         } else {
             state.pc++;
         }
@@ -2,25 +2,22 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 abstract class AbstractInstructionMove implements Instruction {
     protected final Target destination;
 
-    // Flag for finishing in step if we get an onWriteComplete before it.
-    // Note that this can only ever happen if step is also called in the
-    // same update cycle, so it is not necessary to persist this flag.
-    private boolean isDone;
-
     protected AbstractInstructionMove(final Target destination) {
         this.destination = destination;
     }
 
     @Override
     public void step(final Machine machine) {
-        if (isDone) {
-            isDone = false;
-            machine.getState().pc++;
+        final MachineState state = machine.getState();
+        if (state.isWriteCompleted) {
+            state.isWriteCompleted = false;
+            state.pc++;
         } else {
             doStep(machine);
         }
@@ -31,6 +28,6 @@ abstract class AbstractInstructionMove implements Instruction {
     @Override
     public void onWriteCompleted(final Machine machine, final Port port) {
         machine.getInterface(destination).onWriteComplete(port);
-        isDone = true;
+        machine.getState().isWriteCompleted = true;
     }
 }
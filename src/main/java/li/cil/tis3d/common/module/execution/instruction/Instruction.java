@@ -2,6 +2,7 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.api.machine.Port;
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
 
 /**
  * A single instruction that can be executed by the execution module.
@@ -31,4 +32,15 @@ public interface Instruction {
      */
     default void onWriteCompleted(final Machine machine, final Port port) {
     }
+
+    /**
+     * Lower the instruction into its packed representation, used by the
+     * {@link li.cil.tis3d.common.module.execution.opcode.OpcodeInterpreter}.
+     * <p>
+     * Implementations must emit exactly one opcode, so that addresses remain
+     * the same in the packed program.
+     *
+     * @param builder the builder to emit the opcode into.
+     */
+    void lower(OpcodeProgram.Builder builder);
 }
@@ -2,6 +2,8 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 public final class InstructionAdd extends AbstractInstructionRead {
@@ -16,6 +18,16 @@ public final class InstructionAdd extends AbstractInstructionRead {
         state.pc++;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        // NOP is compiled to ADD NIL, which is the most common use of it.
+        if (source == Target.NIL) {
+            builder.emit(Opcodes.NOP);
+        } else {
+            builder.emitRead(Opcodes.ADD, Opcodes.ADD_IMM, source);
+        }
+    }
+
     @Override
     public String toString() {
         return "ADD " + source;
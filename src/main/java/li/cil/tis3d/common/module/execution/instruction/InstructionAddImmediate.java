@@ -2,6 +2,8 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 
 public final class InstructionAddImmediate implements Instruction {
     private final int value;
@@ -17,6 +19,11 @@ public final class InstructionAddImmediate implements Instruction {
         state.pc++;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emit(Opcodes.ADD_IMM, value);
+    }
+
     @Override
     public String toString() {
         return "ADD " + value;
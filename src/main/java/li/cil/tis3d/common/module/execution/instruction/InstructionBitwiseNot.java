@@ -2,6 +2,8 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 
 public final class InstructionBitwiseNot implements Instruction {
     public static final Instruction INSTANCE = new InstructionBitwiseNot();
@@ -13,6 +15,11 @@ public final class InstructionBitwiseNot implements Instruction {
         state.pc++;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emit(Opcodes.NOT);
+    }
+
     @Override
     public String toString() {
         return "NOT";
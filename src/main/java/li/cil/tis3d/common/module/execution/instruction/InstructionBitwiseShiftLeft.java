@@ -2,6 +2,8 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
 
 public final class InstructionBitwiseShiftLeft extends AbstractInstructionRead {
@@ -16,6 +18,11 @@ public final class InstructionBitwiseShiftLeft extends AbstractInstructionRead {
         state.pc++;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emitRead(Opcodes.SHL, Opcodes.SHL_IMM, source);
+    }
+
     @Override
     public String toString() {
         return "SHL " + source;
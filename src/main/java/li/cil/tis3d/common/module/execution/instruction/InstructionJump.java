@@ -2,6 +2,8 @@ package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 
 public final class InstructionJump implements Instruction {
     private final String label;
@@ -13,7 +15,12 @@ public final class InstructionJump implements Instruction {
     @Override
     public void step(final Machine machine) {
         final MachineState state = machine.getState();
-        state.pc = state.labels.get(label);
+        state.pc = state.program.labels.get(label);
+    }
+
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emit(Opcodes.JMP, builder.getAddress(label));
     }
 
     @Override
@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 
 public final class InstructionJumpEqualZero extends AbstractInstructionJumpConditional {
     public InstructionJumpEqualZero(final String label) {
@@ -12,6 +14,11 @@ public final class InstructionJumpEqualZero extends AbstractInstructionJumpCondi
         return state.acc == 0;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emit(Opcodes.JEZ, builder.getAddress(label));
+    }
+
     @Override
     public String toString() {
         return "JEZ " + label;
@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 
 public final class InstructionJumpLessThanZero extends AbstractInstructionJumpConditional {
     public InstructionJumpLessThanZero(final String label) {
@@ -12,6 +14,11 @@ public final class InstructionJumpLessThanZero extends AbstractInstructionJumpCo
         return state.acc < 0;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emit(Opcodes.JLZ, builder.getAddress(label));
+    }
+
     @Override
     public String toString() {
         return "JLZ " + label;
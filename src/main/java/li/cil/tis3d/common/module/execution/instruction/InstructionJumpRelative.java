@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
 import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
@@ -23,6 +25,15 @@ public final class InstructionJumpRelative implements Instruction {
         }
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        if (source == Target.ACC) {
+            builder.emit(Opcodes.JRO_ACC);
+        } else {
+            builder.emitRead(Opcodes.JRO, Opcodes.JRO_IMM, source);
+        }
+    }
+
     @Override
     public String toString() {
         return "JRO " + source;
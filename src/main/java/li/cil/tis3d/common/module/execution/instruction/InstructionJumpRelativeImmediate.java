@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 
 public final class InstructionJumpRelativeImmediate implements Instruction {
     private final int delta;
@@ -14,6 +16,11 @@ public final class InstructionJumpRelativeImmediate implements Instruction {
         machine.getState().pc += delta;
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        builder.emit(Opcodes.JRO_IMM, delta);
+    }
+
     @Override
     public String toString() {
         return "JRO " + delta;
@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
 import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
@@ -29,6 +31,21 @@ public final class InstructionMove extends AbstractInstructionMove {
         }
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        // Fold register operands into the opcode where possible, so they
+        // need not be accessed via their target interfaces.
+        if (source == Target.ACC) {
+            builder.emit(Opcodes.MOV_ACC, 0, destination.ordinal());
+        } else if (destination == Target.ACC) {
+            builder.emitRead(Opcodes.MOV_TO_ACC, Opcodes.MOV_IMM_ACC, source);
+        } else if (source == Target.NIL) {
+            builder.emit(Opcodes.MOV_IMM, 0, destination.ordinal());
+        } else {
+            builder.emit(Opcodes.MOV, source.ordinal(), destination.ordinal());
+        }
+    }
+
     @Override
     public String toString() {
         return "MOV " + source + " " + destination;
@@ -1,6 +1,8 @@
 package li.cil.tis3d.common.module.execution.instruction;
 
 import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.opcode.OpcodeProgram;
+import li.cil.tis3d.common.module.execution.opcode.Opcodes;
 import li.cil.tis3d.common.module.execution.target.Target;
 import li.cil.tis3d.common.module.execution.target.TargetInterface;
 
@@ -23,6 +25,15 @@ public final class InstructionMoveImmediate extends AbstractInstructionMove {
         }
     }
 
+    @Override
+    public void lower(final OpcodeProgram.Builder builder) {
+        if (destination == Target.ACC) {
+            builder.emit(Opcodes.MOV_IMM_ACC, value);
+        } else {
+            builder.emit(Opcodes.MOV_IMM, value, destination.ordinal());
+        }
+    }
+
     @Override
     public String toString() {
         return "MOV " + value + " " + destination;
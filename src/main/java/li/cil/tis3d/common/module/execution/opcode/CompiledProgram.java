@@ -0,0 +1,28 @@
+package li.cil.tis3d.common.module.execution.opcode;
+
+import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
+
+/**
+ * Base class for {@link OpcodeProgram}s compiled to JVM bytecode by the
+ * {@link OpcodeCompiler}.
+ * <p>
+ * Generated classes are defined in their own class loader, so they can be
+ * unloaded together with their program. This also means they may only
+ * access public members of other classes.
+ */
+public abstract class CompiledProgram {
+    protected CompiledProgram() {
+    }
+
+    /**
+     * Execute the current instruction of the machine's program.
+     * <p>
+     * Behaves exactly like {@link OpcodeInterpreter#step()}. The program
+     * counter must be in bounds when this is called.
+     *
+     * @param machine the machine to run the instruction on.
+     * @param state   the state of the machine.
+     */
+    public abstract void step(final Machine machine, final MachineState state);
+}
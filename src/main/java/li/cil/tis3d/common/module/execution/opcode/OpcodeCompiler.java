@@ -0,0 +1,421 @@
+package li.cil.tis3d.common.module.execution.opcode;
+
+import li.cil.tis3d.common.TIS3D;
+import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.target.TargetInterface;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IAND;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.IOR;
+import static org.objectweb.asm.Opcodes.ISHL;
+import static org.objectweb.asm.Opcodes.ISHR;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * Compiles {@link OpcodeProgram}s to JVM bytecode.
+ * <p>
+ * Each program is turned into a {@link CompiledProgram} with a single method
+ * containing a <tt>tableswitch</tt> over the program counter, with one case
+ * per instruction. Operands, jump targets and relative jump offsets are baked
+ * into the cases as constants, so there is no decoding left to do at runtime
+ * and HotSpot is free to optimize each case on its own. Target access is
+ * delegated to the static helpers of the {@link OpcodeInterpreter}, so the
+ * compiled program behaves exactly like the interpreted one, step for step.
+ * <p>
+ * Write completion is tracked via {@link MachineState#isWriteCompleted},
+ * which is set by {@link OpcodeInterpreter#onWriteCompleted} in both cases,
+ * so that never needs to enter compiled code.
+ */
+final class OpcodeCompiler {
+    private static final String CLASS_NAME_PREFIX = Type.getInternalName(CompiledProgram.class) + "$Generated";
+    private static final String SUPER_NAME = Type.getInternalName(CompiledProgram.class);
+    private static final String INTERPRETER_NAME = Type.getInternalName(OpcodeInterpreter.class);
+    private static final String STATE_NAME = Type.getInternalName(MachineState.class);
+    private static final String TARGET_INTERFACE_NAME = Type.getInternalName(TargetInterface.class);
+
+    private static final String STEP_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Machine.class), Type.getType(MachineState.class));
+    private static final String BEGIN_READ_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(TargetInterface.class), Type.getType(Machine.class), Type.INT_TYPE);
+    private static final String MOVE_DESCRIPTOR = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, Type.getType(Machine.class), Type.INT_TYPE, Type.INT_TYPE);
+
+    // Local variable slots in the generated step method.
+    private static final int LOCAL_MACHINE = 1;
+    private static final int LOCAL_STATE = 2;
+    private static final int LOCAL_SOURCE = 3;
+    private static final int LOCAL_TEMP = 4;
+
+    /**
+     * Used to give generated classes unique names, for readable stack traces.
+     */
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Compile the specified program to JVM bytecode.
+     *
+     * @param program the program to compile.
+     * @return the compiled program, or <tt>null</tt> if compilation failed.
+     */
+    static CompiledProgram compile(final OpcodeProgram program) {
+        final String className = CLASS_NAME_PREFIX + CLASS_COUNTER.incrementAndGet();
+        try {
+            final byte[] bytes = generate(className, program);
+            final Class<?> clazz = new GeneratedClassLoader().define(className.replace('/', '.'), bytes);
+            return (CompiledProgram) clazz.newInstance();
+        } catch (final Exception | LinkageError e) {
+            TIS3D.getLog().warn("Failed compiling program, falling back to interpreter.", e);
+            return null;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static byte[] generate(final String className, final OpcodeProgram program) {
+        final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(final String type1, final String type2) {
+                // Avoid loading classes, we never merge unrelated types.
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, SUPER_NAME, null);
+
+        final MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, SUPER_NAME, "<init>", "()V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        final MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_FINAL, "step", STEP_DESCRIPTOR, null, null);
+        mv.visitCode();
+
+        final int length = program.length();
+        final Label exit = new Label();
+        if (length > 0) {
+            final Label[] cases = new Label[length];
+            for (int address = 0; address < length; address++) {
+                cases[address] = new Label();
+            }
+
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitFieldInsn(GETFIELD, STATE_NAME, "pc", "I");
+            mv.visitTableSwitchInsn(0, length - 1, exit, cases);
+
+            final int[] code = program.getCode();
+            for (int address = 0; address < length; address++) {
+                final int offset = address * OpcodeProgram.STRIDE;
+                mv.visitLabel(cases[address]);
+                generateInstruction(mv, address, code[offset], code[offset + 1], code[offset + 2]);
+            }
+        }
+
+        mv.visitLabel(exit);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateInstruction(final MethodVisitor mv, final int address, final int opcode, final int a, final int b) {
+        final Label skip = new Label();
+
+        if (Opcodes.isMove(opcode)) {
+            // Finish a write started in a previous step.
+            final Label notCompleted = new Label();
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitFieldInsn(GETFIELD, STATE_NAME, "isWriteCompleted", "Z");
+            mv.visitJumpInsn(IFEQ, notCompleted);
+            mv.visitVarInsn(ALOAD, LOCAL_STATE);
+            mv.visitInsn(ICONST_0);
+            mv.visitFieldInsn(PUTFIELD, STATE_NAME, "isWriteCompleted", "Z");
+            generateSetPc(mv, address + 1);
+            mv.visitInsn(RETURN);
+            mv.visitLabel(notCompleted);
+        }
+
+        switch (opcode) {
+            case Opcodes.NOP:
+                break;
+
+            case Opcodes.MOV:
+                generateMove(mv, "move", a, b, skip);
+                break;
+            case Opcodes.MOV_IMM:
+                generateMove(mv, "moveImmediate", a, b, skip);
+                break;
+            case Opcodes.MOV_ACC:
+                mv.visitVarInsn(ALOAD, LOCAL_MACHINE);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+                generateInt(mv, b);
+                mv.visitMethodInsn(INVOKESTATIC, INTERPRETER_NAME, "moveImmediate", MOVE_DESCRIPTOR, false);
+                mv.visitJumpInsn(IFEQ, skip);
+                break;
+            case Opcodes.MOV_IMM_ACC:
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                generateInt(mv, a);
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "acc", "I");
+                break;
+            case Opcodes.MOV_TO_ACC:
+                generateBeginRead(mv, a, skip);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                generateRead(mv);
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "acc", "I");
+                break;
+
+            case Opcodes.SAV:
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "bak", "I");
+                break;
+            case Opcodes.SWP:
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+                mv.visitVarInsn(ISTORE, LOCAL_TEMP);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitFieldInsn(GETFIELD, STATE_NAME, "bak", "I");
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "acc", "I");
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitVarInsn(ILOAD, LOCAL_TEMP);
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "bak", "I");
+                break;
+            case Opcodes.NEG:
+                generateAccumulate(mv, INEG);
+                break;
+            case Opcodes.NOT:
+                generateAccumulateImmediate(mv, ~0, IXOR);
+                break;
+
+            case Opcodes.ADD:
+                generateAccumulateRead(mv, a, IADD, skip);
+                break;
+            case Opcodes.ADD_IMM:
+                generateAccumulateImmediate(mv, a, IADD);
+                break;
+            case Opcodes.SUB:
+                generateAccumulateRead(mv, a, ISUB, skip);
+                break;
+            case Opcodes.SUB_IMM:
+                generateAccumulateImmediate(mv, a, ISUB);
+                break;
+            case Opcodes.AND:
+                generateAccumulateRead(mv, a, IAND, skip);
+                break;
+            case Opcodes.AND_IMM:
+                generateAccumulateImmediate(mv, a, IAND);
+                break;
+            case Opcodes.OR:
+                generateAccumulateRead(mv, a, IOR, skip);
+                break;
+            case Opcodes.OR_IMM:
+                generateAccumulateImmediate(mv, a, IOR);
+                break;
+            case Opcodes.XOR:
+                generateAccumulateRead(mv, a, IXOR, skip);
+                break;
+            case Opcodes.XOR_IMM:
+                generateAccumulateImmediate(mv, a, IXOR);
+                break;
+            case Opcodes.SHL:
+                generateAccumulateRead(mv, a, ISHL, skip);
+                break;
+            case Opcodes.SHL_IMM:
+                generateAccumulateImmediate(mv, a, ISHL);
+                break;
+            case Opcodes.SHR:
+                generateAccumulateRead(mv, a, ISHR, skip);
+                break;
+            case Opcodes.SHR_IMM:
+                generateAccumulateImmediate(mv, a, ISHR);
+                break;
+
+            case Opcodes.JMP:
+                generateSetPc(mv, a);
+                mv.visitInsn(RETURN);
+                return;
+            case Opcodes.JEZ:
+                generateConditionalJump(mv, address, a, IFNE);
+                return;
+            case Opcodes.JNZ:
+                generateConditionalJump(mv, address, a, IFEQ);
+                return;
+            case Opcodes.JGZ:
+                generateConditionalJump(mv, address, a, IFLE);
+                return;
+            case Opcodes.JLZ:
+                generateConditionalJump(mv, address, a, IFGE);
+                return;
+            case Opcodes.JRO:
+                generateBeginRead(mv, a, skip);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                generateInt(mv, address);
+                generateRead(mv);
+                mv.visitInsn(IADD);
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "pc", "I");
+                mv.visitLabel(skip);
+                mv.visitInsn(RETURN);
+                return;
+            case Opcodes.JRO_IMM:
+                generateSetPc(mv, address + a);
+                mv.visitInsn(RETURN);
+                return;
+            case Opcodes.JRO_ACC:
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                generateInt(mv, address);
+                mv.visitVarInsn(ALOAD, LOCAL_STATE);
+                mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+                mv.visitInsn(IADD);
+                mv.visitFieldInsn(PUTFIELD, STATE_NAME, "pc", "I");
+                mv.visitInsn(RETURN);
+                return;
+
+            default:
+                throw new IllegalStateException("Invalid opcode: " + opcode);
+        }
+
+        // Advance to the next instruction. Anything that may fail to complete
+        // in this step jumps past this.
+        generateSetPc(mv, address + 1);
+        mv.visitLabel(skip);
+        mv.visitInsn(RETURN);
+    }
+
+    private static void generateMove(final MethodVisitor mv, final String helper, final int a, final int b, final Label skip) {
+        mv.visitVarInsn(ALOAD, LOCAL_MACHINE);
+        generateInt(mv, a);
+        generateInt(mv, b);
+        mv.visitMethodInsn(INVOKESTATIC, INTERPRETER_NAME, helper, MOVE_DESCRIPTOR, false);
+        mv.visitJumpInsn(IFEQ, skip);
+    }
+
+    private static void generateAccumulate(final MethodVisitor mv, final int operation) {
+        mv.visitVarInsn(ALOAD, LOCAL_STATE);
+        mv.visitInsn(DUP);
+        mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+        mv.visitInsn(operation);
+        mv.visitFieldInsn(PUTFIELD, STATE_NAME, "acc", "I");
+    }
+
+    private static void generateAccumulateImmediate(final MethodVisitor mv, final int value, final int operation) {
+        mv.visitVarInsn(ALOAD, LOCAL_STATE);
+        mv.visitInsn(DUP);
+        mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+        generateInt(mv, value);
+        mv.visitInsn(operation);
+        mv.visitFieldInsn(PUTFIELD, STATE_NAME, "acc", "I");
+    }
+
+    private static void generateAccumulateRead(final MethodVisitor mv, final int source, final int operation, final Label skip) {
+        generateBeginRead(mv, source, skip);
+        mv.visitVarInsn(ALOAD, LOCAL_STATE);
+        mv.visitInsn(DUP);
+        mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+        generateRead(mv);
+        mv.visitInsn(operation);
+        mv.visitFieldInsn(PUTFIELD, STATE_NAME, "acc", "I");
+    }
+
+    private static void generateBeginRead(final MethodVisitor mv, final int source, final Label skip) {
+        mv.visitVarInsn(ALOAD, LOCAL_MACHINE);
+        generateInt(mv, source);
+        mv.visitMethodInsn(INVOKESTATIC, INTERPRETER_NAME, "beginRead", BEGIN_READ_DESCRIPTOR, false);
+        mv.visitVarInsn(ASTORE, LOCAL_SOURCE);
+        mv.visitVarInsn(ALOAD, LOCAL_SOURCE);
+        mv.visitJumpInsn(IFNULL, skip);
+    }
+
+    private static void generateRead(final MethodVisitor mv) {
+        mv.visitVarInsn(ALOAD, LOCAL_SOURCE);
+        mv.visitMethodInsn(INVOKEINTERFACE, TARGET_INTERFACE_NAME, "read", "()I", true);
+    }
+
+    private static void generateConditionalJump(final MethodVisitor mv, final int address, final int target, final int notTaken) {
+        final Label next = new Label();
+        mv.visitVarInsn(ALOAD, LOCAL_STATE);
+        mv.visitFieldInsn(GETFIELD, STATE_NAME, "acc", "I");
+        mv.visitJumpInsn(notTaken, next);
+        generateSetPc(mv, target);
+        mv.visitInsn(RETURN);
+        mv.visitLabel(next);
+        generateSetPc(mv, address + 1);
+        mv.visitInsn(RETURN);
+    }
+
+    private static void generateSetPc(final MethodVisitor mv, final int value) {
+        mv.visitVarInsn(ALOAD, LOCAL_STATE);
+        generateInt(mv, value);
+        mv.visitFieldInsn(PUTFIELD, STATE_NAME, "pc", "I");
+    }
+
+    private static void generateInt(final MethodVisitor mv, final int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value); // ICONST_M1 through ICONST_5 are consecutive.
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * One class loader per generated class, so that it can be garbage
+     * collected once the program it was generated for is no longer used.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader() {
+            super(OpcodeCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(final String name, final byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private OpcodeCompiler() {
+    }
+}
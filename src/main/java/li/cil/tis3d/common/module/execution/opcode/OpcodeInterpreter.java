@@ -0,0 +1,321 @@
+package li.cil.tis3d.common.module.execution.opcode;
+
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.target.Target;
+import li.cil.tis3d.common.module.execution.target.TargetInterface;
+
+/**
+ * Runs {@link OpcodeProgram}s on a machine.
+ * <p>
+ * This is an alternative to stepping the {@link li.cil.tis3d.common.module.execution.instruction.Instruction}s
+ * of a machine directly, behaving exactly the same, step for step, but
+ * dispatching over a single switch on the packed program instead of calling
+ * into the individual instruction implementations.
+ * <p>
+ * Programs that have run for {@link Settings#opcodeCompilerThreshold} steps
+ * are compiled to JVM bytecode by the {@link OpcodeCompiler}, after which
+ * their steps are delegated to the {@link CompiledProgram}.
+ */
+public final class OpcodeInterpreter {
+    // --------------------------------------------------------------------- //
+    // Computed data
+
+    private final Machine machine;
+
+    // --------------------------------------------------------------------- //
+
+    public OpcodeInterpreter(final Machine machine) {
+        this.machine = machine;
+    }
+
+    /**
+     * Execute the current instruction of the machine's program.
+     * <p>
+     * Does nothing if the program counter is out of bounds, e.g. because the
+     * machine has no program.
+     */
+    public void step() {
+        final MachineState state = machine.getState();
+        final OpcodeProgram program = state.program.opcodes;
+        if (state.pc < 0 || state.pc >= program.length()) {
+            return;
+        }
+
+        final CompiledProgram compiled = program.getCompiled();
+        if (compiled != null) {
+            compiled.step(machine, state);
+            return;
+        }
+
+        final int[] code = program.getCode();
+        final int offset = state.pc * OpcodeProgram.STRIDE;
+        final int opcode = code[offset];
+        final int a = code[offset + 1];
+        final int b = code[offset + 2];
+
+        if (state.isWriteCompleted && Opcodes.isMove(opcode)) {
+            state.isWriteCompleted = false;
+            state.pc++;
+            return;
+        }
+
+        switch (opcode) {
+            case Opcodes.NOP:
+                state.pc++;
+                break;
+
+            case Opcodes.MOV:
+                if (move(machine, a, b)) {
+                    state.pc++;
+                }
+                break;
+            case Opcodes.MOV_IMM:
+                if (moveImmediate(machine, a, b)) {
+                    state.pc++;
+                }
+                break;
+            case Opcodes.MOV_ACC:
+                if (moveImmediate(machine, state.acc, b)) {
+                    state.pc++;
+                }
+                break;
+            case Opcodes.MOV_IMM_ACC:
+                state.acc = a;
+                state.pc++;
+                break;
+            case Opcodes.MOV_TO_ACC: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc = source.read();
+                    state.pc++;
+                }
+                break;
+            }
+
+            case Opcodes.SAV:
+                state.bak = state.acc;
+                state.pc++;
+                break;
+            case Opcodes.SWP: {
+                final int tmp = state.acc;
+                state.acc = state.bak;
+                state.bak = tmp;
+                state.pc++;
+                break;
+            }
+            case Opcodes.NEG:
+                state.acc = -state.acc;
+                state.pc++;
+                break;
+            case Opcodes.NOT:
+                state.acc = ~state.acc;
+                state.pc++;
+                break;
+
+            case Opcodes.ADD: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc += source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.ADD_IMM:
+                state.acc += a;
+                state.pc++;
+                break;
+            case Opcodes.SUB: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc -= source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.SUB_IMM:
+                state.acc -= a;
+                state.pc++;
+                break;
+            case Opcodes.AND: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc &= source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.AND_IMM:
+                state.acc &= a;
+                state.pc++;
+                break;
+            case Opcodes.OR: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc |= source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.OR_IMM:
+                state.acc |= a;
+                state.pc++;
+                break;
+            case Opcodes.XOR: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc ^= source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.XOR_IMM:
+                state.acc ^= a;
+                state.pc++;
+                break;
+            case Opcodes.SHL: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc <<= source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.SHL_IMM:
+                state.acc <<= a;
+                state.pc++;
+                break;
+            case Opcodes.SHR: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.acc >>= source.read();
+                    state.pc++;
+                }
+                break;
+            }
+            case Opcodes.SHR_IMM:
+                state.acc >>= a;
+                state.pc++;
+                break;
+
+            case Opcodes.JMP:
+                state.pc = a;
+                break;
+            case Opcodes.JEZ:
+                state.pc = state.acc == 0 ? a : state.pc + 1;
+                break;
+            case Opcodes.JNZ:
+                state.pc = state.acc != 0 ? a : state.pc + 1;
+                break;
+            case Opcodes.JGZ:
+                state.pc = state.acc > 0 ? a : state.pc + 1;
+                break;
+            case Opcodes.JLZ:
+                state.pc = state.acc < 0 ? a : state.pc + 1;
+                break;
+            case Opcodes.JRO: {
+                final TargetInterface source = beginRead(machine, a);
+                if (source != null) {
+                    state.pc += source.read();
+                }
+                break;
+            }
+            case Opcodes.JRO_IMM:
+                state.pc += a;
+                break;
+            case Opcodes.JRO_ACC:
+                state.pc += state.acc;
+                break;
+
+            default:
+                throw new IllegalStateException("Invalid opcode: " + opcode);
+        }
+    }
+
+    /**
+     * Inform the active instruction that a write operation was completed.
+     *
+     * @param port the port on which the write operation was completed.
+     */
+    public void onWriteCompleted(final Port port) {
+        final MachineState state = machine.getState();
+        final OpcodeProgram program = state.program.opcodes;
+        if (state.pc < 0 || state.pc >= program.length()) {
+            return;
+        }
+
+        final int[] code = program.getCode();
+        final int offset = state.pc * OpcodeProgram.STRIDE;
+        final int opcode = code[offset];
+        if (Opcodes.isMove(opcode)) {
+            if (opcode != Opcodes.MOV_IMM_ACC && opcode != Opcodes.MOV_TO_ACC) {
+                getInterface(machine, code[offset + 2]).onWriteComplete(port);
+            }
+            state.isWriteCompleted = true;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+    // Shared with programs generated by the OpcodeCompiler, so these must be public.
+
+    /**
+     * Get the interface of the specified target.
+     *
+     * @param machine the machine to get the interface from.
+     * @param target  the ordinal of the target.
+     * @return the interface of the target.
+     */
+    public static TargetInterface getInterface(final Machine machine, final int target) {
+        return machine.getInterface(Target.VALUES[target]);
+    }
+
+    /**
+     * Begin reading from the specified target, if we aren't already.
+     *
+     * @param machine the machine to read on.
+     * @param target  the ordinal of the target to read from.
+     * @return the interface of the target if it can transfer, <tt>null</tt> otherwise.
+     */
+    public static TargetInterface beginRead(final Machine machine, final int target) {
+        final TargetInterface source = getInterface(machine, target);
+        if (!source.isReading()) {
+            source.beginRead();
+        }
+        return source.canTransfer() ? source : null;
+    }
+
+    /**
+     * Move a value from one target to another, if the destination is not
+     * already being written to and the source can transfer.
+     *
+     * @param machine     the machine to move on.
+     * @param source      the ordinal of the target to read from.
+     * @param destination the ordinal of the target to write to.
+     * @return <tt>true</tt> if the write finished synchronously, <tt>false</tt> otherwise.
+     */
+    public static boolean move(final Machine machine, final int source, final int destination) {
+        final TargetInterface destinationInterface = getInterface(machine, destination);
+        if (!destinationInterface.isWriting()) {
+            final TargetInterface sourceInterface = beginRead(machine, source);
+            if (sourceInterface != null && destinationInterface.beginWrite(sourceInterface.read())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move an immediate value to a target, if it is not already being written to.
+     *
+     * @param machine     the machine to move on.
+     * @param value       the value to write.
+     * @param destination the ordinal of the target to write to.
+     * @return <tt>true</tt> if the write finished synchronously, <tt>false</tt> otherwise.
+     */
+    public static boolean moveImmediate(final Machine machine, final int value, final int destination) {
+        final TargetInterface destinationInterface = getInterface(machine, destination);
+        return !destinationInterface.isWriting() && destinationInterface.beginWrite(value);
+    }
+}
@@ -0,0 +1,256 @@
+package li.cil.tis3d.common.module.execution.opcode;
+
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A program lowered from a list of {@link Instruction}s into a packed array
+ * of opcodes and operands, for execution by the {@link OpcodeInterpreter}.
+ * <p>
+ * Instances are immutable, save for the lazily compiled version of the
+ * program. Addresses are the same as in the instruction list the program
+ * was lowered from, so the program counter, labels and line number mapping
+ * of the machine state stay valid.
+ */
+public final class OpcodeProgram {
+    /**
+     * The number of ints each instruction occupies in the packed program.
+     */
+    public static final int STRIDE = 3;
+
+    /**
+     * The packed program, {@link #STRIDE} ints per instruction.
+     */
+    private final int[] code;
+
+    /**
+     * For each instruction, whether it only operates on registers, i.e. does
+     * not access any ports.
+     */
+    private final boolean[] registerOnly;
+
+    /**
+     * The number of steps this program has been interpreted for, used to
+     * decide when to compile it.
+     */
+    private int stepCount;
+
+    /**
+     * The program compiled to JVM bytecode, once it has been compiled.
+     * <p>
+     * Programs are shared between machines, which may be stepped on different
+     * threads. Racing on {@link #stepCount} at worst compiles the program
+     * twice, but the compiled program must be safely published.
+     */
+    private volatile CompiledProgram compiled;
+
+    // --------------------------------------------------------------------- //
+
+    private OpcodeProgram(final int[] code) {
+        this.code = code;
+        this.registerOnly = new boolean[code.length / STRIDE];
+        for (int address = 0; address < registerOnly.length; address++) {
+            final int offset = address * STRIDE;
+            registerOnly[address] = isRegisterOnly(code[offset], code[offset + 1], code[offset + 2]);
+        }
+    }
+
+    /**
+     * Lower the specified instructions into a packed program.
+     *
+     * @param instructions the instructions to lower.
+     * @param labels       the labels of the program, to resolve jump targets.
+     * @return the lowered program.
+     */
+    public static OpcodeProgram lower(final List<Instruction> instructions, final Map<String, Integer> labels) {
+        final Builder builder = new Builder(labels, instructions.size());
+        for (final Instruction instruction : instructions) {
+            instruction.lower(builder);
+        }
+        return builder.build();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * The number of instructions in the program.
+     *
+     * @return the length of the program.
+     */
+    public int length() {
+        return code.length / STRIDE;
+    }
+
+    /**
+     * Whether the instruction at the specified address only operates on
+     * registers and immediate values, i.e. does not access any ports.
+     * <p>
+     * The result of executing such an instruction only depends on the state
+     * of the machine, not on the outside world.
+     *
+     * @param address the address of the instruction.
+     * @return <tt>true</tt> if the instruction is register-only, <tt>false</tt> otherwise or if out of bounds.
+     */
+    public boolean isRegisterOnly(final int address) {
+        return address >= 0 && address < registerOnly.length && registerOnly[address];
+    }
+
+    /**
+     * Get the packed program.
+     * <p>
+     * The returned array <em>must not</em> be modified.
+     *
+     * @return the packed program.
+     */
+    int[] getCode() {
+        return code;
+    }
+
+    /**
+     * Get the compiled version of this program, if available.
+     * <p>
+     * Counts the number of calls and compiles the program once this reaches
+     * {@link Settings#opcodeCompilerThreshold}. If compilation fails, the
+     * program keeps being interpreted.
+     *
+     * @return the compiled program, or <tt>null</tt> if it should be interpreted.
+     */
+    CompiledProgram getCompiled() {
+        if (compiled == null && Settings.opcodeCompilerThreshold > 0 && ++stepCount == Settings.opcodeCompilerThreshold) {
+            compiled = OpcodeCompiler.compile(this);
+        }
+        return compiled;
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static boolean isRegisterOnly(final int opcode, final int a, final int b) {
+        switch (opcode) {
+            case Opcodes.MOV:
+                return isRegister(a) && isRegister(b);
+            case Opcodes.MOV_IMM:
+            case Opcodes.MOV_ACC:
+                return isRegister(b);
+            case Opcodes.MOV_TO_ACC:
+            case Opcodes.ADD:
+            case Opcodes.SUB:
+            case Opcodes.AND:
+            case Opcodes.OR:
+            case Opcodes.XOR:
+            case Opcodes.SHL:
+            case Opcodes.SHR:
+            case Opcodes.JRO:
+                return isRegister(a);
+            default:
+                // Register operations, immediates and jumps.
+                return true;
+        }
+    }
+
+    private static boolean isRegister(final int target) {
+        return target == Target.ACC.ordinal() || target == Target.NIL.ordinal();
+    }
+
+    // --------------------------------------------------------------------- //
+    // Object
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        for (int offset = 0; offset < code.length; offset += STRIDE) {
+            builder.append(offset / STRIDE).append(": ").
+                    append(Opcodes.getName(code[offset])).append(' ').
+                    append(code[offset + 1]).append(' ').
+                    append(code[offset + 2]).append('\n');
+        }
+        return builder.toString();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Collects opcodes emitted by {@link Instruction#lower(Builder)}.
+     */
+    public static final class Builder {
+        private final Map<String, Integer> labels;
+        private final int[] code;
+        private int offset;
+
+        private Builder(final Map<String, Integer> labels, final int length) {
+            this.labels = labels;
+            this.code = new int[length * STRIDE];
+        }
+
+        /**
+         * Emit an instruction with up to two operands.
+         *
+         * @param opcode the opcode of the instruction.
+         * @param a      the first operand.
+         * @param b      the second operand.
+         */
+        public void emit(final int opcode, final int a, final int b) {
+            code[offset] = opcode;
+            code[offset + 1] = a;
+            code[offset + 2] = b;
+            offset += STRIDE;
+        }
+
+        /**
+         * Emit an instruction with up to one operand.
+         *
+         * @param opcode the opcode of the instruction.
+         * @param a      the first operand.
+         */
+        public void emit(final int opcode, final int a) {
+            emit(opcode, a, 0);
+        }
+
+        /**
+         * Emit an instruction without operands.
+         *
+         * @param opcode the opcode of the instruction.
+         */
+        public void emit(final int opcode) {
+            emit(opcode, 0, 0);
+        }
+
+        /**
+         * Emit an instruction reading its operand from the specified target.
+         * <p>
+         * Reading from {@link Target#NIL} always yields zero in the same step,
+         * so such reads are lowered to the immediate variant of the opcode.
+         *
+         * @param opcode          the opcode reading from a target.
+         * @param opcodeImmediate the opcode using an immediate value.
+         * @param source          the target to read from.
+         */
+        public void emitRead(final int opcode, final int opcodeImmediate, final Target source) {
+            if (source == Target.NIL) {
+                emit(opcodeImmediate, 0);
+            } else {
+                emit(opcode, source.ordinal());
+            }
+        }
+
+        /**
+         * Resolve the address of the specified label.
+         *
+         * @param label the label to resolve.
+         * @return the address the label points to.
+         */
+        public int getAddress(final String label) {
+            return labels.get(label);
+        }
+
+        private OpcodeProgram build() {
+            if (offset != code.length) {
+                throw new IllegalStateException("Instruction did not emit an opcode.");
+            }
+            return new OpcodeProgram(code);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package li.cil.tis3d.common.module.execution.opcode;
+
+/**
+ * Opcodes used in the packed program representation run by the {@link OpcodeInterpreter}.
+ * <p>
+ * Each instruction occupies {@link OpcodeProgram#STRIDE} consecutive ints in
+ * the packed program: the opcode followed by up to two operands. Operands are
+ * either immediate values, {@link li.cil.tis3d.common.module.execution.target.Target}
+ * ordinals or resolved jump addresses, depending on the opcode.
+ */
+public final class Opcodes {
+    /**
+     * Do nothing, advance to the next instruction. Emitted for <tt>NOP</tt>,
+     * which is compiled to <tt>ADD NIL</tt>.
+     */
+    public static final int NOP = 0;
+
+    // --------------------------------------------------------------------- //
+    // Data transfer. Keep these together, see isMove().
+
+    /**
+     * Move a value from target <tt>a</tt> to target <tt>b</tt>.
+     */
+    public static final int MOV = 1;
+
+    /**
+     * Move immediate value <tt>a</tt> to target <tt>b</tt>.
+     */
+    public static final int MOV_IMM = 2;
+
+    /**
+     * Move the value of the accumulator to target <tt>b</tt>.
+     */
+    public static final int MOV_ACC = 3;
+
+    /**
+     * Move immediate value <tt>a</tt> into the accumulator.
+     */
+    public static final int MOV_IMM_ACC = 4;
+
+    /**
+     * Move a value from target <tt>a</tt> into the accumulator.
+     */
+    public static final int MOV_TO_ACC = 5;
+
+    // --------------------------------------------------------------------- //
+    // Register operations.
+
+    public static final int SAV = 6;
+    public static final int SWP = 7;
+    public static final int NEG = 8;
+    public static final int NOT = 9;
+
+    // --------------------------------------------------------------------- //
+    // Arithmetic and bitwise operations. The plain variants read from target
+    // <tt>a</tt>, the immediate variants use value <tt>a</tt>.
+
+    public static final int ADD = 10;
+    public static final int ADD_IMM = 11;
+    public static final int SUB = 12;
+    public static final int SUB_IMM = 13;
+    public static final int AND = 14;
+    public static final int AND_IMM = 15;
+    public static final int OR = 16;
+    public static final int OR_IMM = 17;
+    public static final int XOR = 18;
+    public static final int XOR_IMM = 19;
+    public static final int SHL = 20;
+    public static final int SHL_IMM = 21;
+    public static final int SHR = 22;
+    public static final int SHR_IMM = 23;
+
+    // --------------------------------------------------------------------- //
+    // Jumps. Absolute jumps use address <tt>a</tt>, relative jumps read the
+    // offset from target <tt>a</tt>, use immediate value <tt>a</tt> or the
+    // value of the accumulator.
+
+    public static final int JMP = 24;
+    public static final int JEZ = 25;
+    public static final int JNZ = 26;
+    public static final int JGZ = 27;
+    public static final int JLZ = 28;
+    public static final int JRO = 29;
+    public static final int JRO_IMM = 30;
+    public static final int JRO_ACC = 31;
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Names of the opcodes, indexed by opcode, for disassembly.
+     */
+    private static final String[] NAMES = new String[]{
+            "NOP",
+            "MOV", "MOV_IMM", "MOV_ACC", "MOV_IMM_ACC", "MOV_TO_ACC",
+            "SAV", "SWP", "NEG", "NOT",
+            "ADD", "ADD_IMM", "SUB", "SUB_IMM",
+            "AND", "AND_IMM", "OR", "OR_IMM", "XOR", "XOR_IMM",
+            "SHL", "SHL_IMM", "SHR", "SHR_IMM",
+            "JMP", "JEZ", "JNZ", "JGZ", "JLZ", "JRO", "JRO_IMM", "JRO_ACC"
+    };
+
+    /**
+     * Whether the specified opcode is a move, i.e. whether it waits for
+     * {@link OpcodeInterpreter#onWriteCompleted} before advancing.
+     *
+     * @param opcode the opcode to check.
+     * @return <tt>true</tt> if the opcode is a move, <tt>false</tt> otherwise.
+     */
+    public static boolean isMove(final int opcode) {
+        return opcode >= MOV && opcode <= MOV_TO_ACC;
+    }
+
+    /**
+     * Get the name of the specified opcode.
+     *
+     * @param opcode the opcode to get the name for.
+     * @return the name of the opcode.
+     */
+    public static String getName(final int opcode) {
+        return opcode >= 0 && opcode < NAMES.length ? NAMES[opcode] : "???";
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private Opcodes() {
+    }
+}
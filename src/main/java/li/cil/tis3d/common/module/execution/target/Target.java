@@ -20,6 +20,11 @@ public enum Target {
     ANY,
     LAST;
 
+    /**
+     * All possible enum values for quick indexing.
+     */
+    public static final Target[] VALUES = Target.values();
+
     public static final Set<Target> VALID_TARGETS = Arrays.asList(Target.values()).stream().filter(t -> t != BAK).collect(Collectors.toSet());
 
     public static final Port[] TO_PORT = new Port[]{Port.UP, Port.UP, Port.UP, Port.LEFT, Port.RIGHT, Port.UP, Port.DOWN, Port.UP, Port.UP};
@@ -2,13 +2,26 @@ package li.cil.tis3d.common.network;
 
 import li.cil.tis3d.api.API;
 import li.cil.tis3d.client.network.handler.MessageHandlerCasingState;
+import li.cil.tis3d.client.network.handler.MessageHandlerControllerState;
+import li.cil.tis3d.client.network.handler.MessageHandlerExecutionState;
+import li.cil.tis3d.client.network.handler.MessageHandlerModuleUpdates;
 import li.cil.tis3d.client.network.handler.MessageHandlerParticleEffects;
+import li.cil.tis3d.client.network.handler.MessageHandlerPipeTransfers;
 import li.cil.tis3d.common.network.handler.MessageHandlerBookCodeData;
+import li.cil.tis3d.common.network.handler.MessageHandlerModuleByteData;
 import li.cil.tis3d.common.network.handler.MessageHandlerModuleData;
+import li.cil.tis3d.common.network.message.AbstractModuleMessage;
 import li.cil.tis3d.common.network.message.MessageCasingState;
+import li.cil.tis3d.common.network.message.MessageControllerState;
+import li.cil.tis3d.common.network.message.MessageExecutionState;
 import li.cil.tis3d.common.network.message.MessageBookCodeData;
+import li.cil.tis3d.common.network.message.MessageModuleByteData;
 import li.cil.tis3d.common.network.message.MessageModuleData;
+import li.cil.tis3d.common.network.message.MessageModuleUpdates;
 import li.cil.tis3d.common.network.message.MessageParticleEffect;
+import li.cil.tis3d.common.network.message.MessagePipeTransfers;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockPos;
 import net.minecraft.world.World;
@@ -16,12 +29,21 @@ import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
 import net.minecraftforge.fml.relauncher.Side;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class Network {
     public static final Network INSTANCE = new Network();
 
     public static final int RANGE_MEDIUM = 32;
     public static final int RANGE_LOW = 16;
 
+    /**
+     * The range in which clients render details of modules, such as registers
+     * or stack contents.
+     */
+    public static final int RANGE_DETAIL = 8;
+
     private static SimpleNetworkWrapper wrapper;
 
     // --------------------------------------------------------------------- //
@@ -33,12 +55,80 @@ public final class Network {
         wrapper.registerMessage(MessageHandlerParticleEffects.class, MessageParticleEffect.class, 3, Side.CLIENT);
         wrapper.registerMessage(MessageHandlerCasingState.class, MessageCasingState.class, 4, Side.CLIENT);
         wrapper.registerMessage(MessageHandlerBookCodeData.class, MessageBookCodeData.class, 5, Side.SERVER);
+        wrapper.registerMessage(MessageHandlerControllerState.class, MessageControllerState.class, 6, Side.CLIENT);
+        wrapper.registerMessage(MessageHandlerExecutionState.class, MessageExecutionState.class, 7, Side.CLIENT);
+        wrapper.registerMessage(MessageHandlerModuleUpdates.class, MessageModuleUpdates.class, 8, Side.CLIENT);
+        wrapper.registerMessage(MessageHandlerModuleByteData.class, MessageModuleByteData.class, 9, Side.CLIENT);
+        wrapper.registerMessage(MessageHandlerModuleByteData.class, MessageModuleByteData.class, 10, Side.SERVER);
+        wrapper.registerMessage(MessageHandlerPipeTransfers.class, MessagePipeTransfers.class, 11, Side.CLIENT);
     }
 
     public SimpleNetworkWrapper getWrapper() {
         return wrapper;
     }
 
+    /**
+     * Send module messages of multiple casings in the specified world to the
+     * players close to them, sending a single batched message per player.
+     * <p>
+     * Each player only receives the messages of casings in the specified range,
+     * excluding players closer than the specified minimum range.
+     *
+     * @param world    the world the casings are in.
+     * @param updates  the messages to send, grouped by casing.
+     * @param minRange the range around each casing to not send its messages in.
+     * @param range    the range around each casing to send its messages in.
+     */
+    public void sendModuleUpdates(final World world, final List<List<AbstractModuleMessage>> updates, final int minRange, final int range) {
+        for (final EntityPlayer player : world.playerEntities) {
+            if (!(player instanceof EntityPlayerMP)) {
+                continue;
+            }
+
+            final List<List<AbstractModuleMessage>> visibleUpdates = new ArrayList<>(updates.size());
+            for (final List<AbstractModuleMessage> messages : updates) {
+                final double distanceSq = player.getDistanceSqToCenter(messages.get(0).getPosition());
+                if (distanceSq >= minRange * minRange && distanceSq < range * range) {
+                    visibleUpdates.add(messages);
+                }
+            }
+
+            if (!visibleUpdates.isEmpty()) {
+                wrapper.sendTo(new MessageModuleUpdates(world, visibleUpdates), (EntityPlayerMP) player);
+            }
+        }
+    }
+
+    /**
+     * Send the pipes data was read from in multiple casings in the specified
+     * world to the players close to them, sending a single message per player.
+     *
+     * @param world     the world the casings are in.
+     * @param positions the positions of the casings.
+     * @param transfers the number of reads per pipe, per casing.
+     * @param range     the range around each casing to send its transfers in.
+     */
+    public void sendPipeTransfers(final World world, final List<BlockPos> positions, final List<int[]> transfers, final int range) {
+        for (final EntityPlayer player : world.playerEntities) {
+            if (!(player instanceof EntityPlayerMP)) {
+                continue;
+            }
+
+            final List<BlockPos> visiblePositions = new ArrayList<>(positions.size());
+            final List<int[]> visibleTransfers = new ArrayList<>(positions.size());
+            for (int index = 0; index < positions.size(); index++) {
+                if (player.getDistanceSqToCenter(positions.get(index)) < range * range) {
+                    visibleTransfers.add(transfers.get(index));
+                    visiblePositions.add(positions.get(index));
+                }
+            }
+
+            if (!visiblePositions.isEmpty()) {
+                wrapper.sendTo(new MessagePipeTransfers(world, visiblePositions, visibleTransfers), (EntityPlayerMP) player);
+            }
+        }
+    }
+
     // --------------------------------------------------------------------- //
 
     public static NetworkRegistry.TargetPoint getTargetPoint(final World world, final double x, final double y, final double z, final int range) {
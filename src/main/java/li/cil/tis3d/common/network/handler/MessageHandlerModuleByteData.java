@@ -0,0 +1,29 @@
+package li.cil.tis3d.common.network.handler;
+
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.common.network.message.MessageModuleByteData;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+
+public final class MessageHandlerModuleByteData extends AbstractMessageHandlerWithLocation<MessageModuleByteData> {
+    @Override
+    protected void process(final MessageModuleByteData message, final MessageContext context) {
+        try {
+            final TileEntity tileEntity = getTileEntity(message, context);
+            if (!(tileEntity instanceof TileEntityCasing)) {
+                return;
+            }
+
+            final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+            final Module module = casing.getModule(message.getFace());
+            if (module == null) {
+                return;
+            }
+
+            module.onData(message.getData());
+        } finally {
+            message.release();
+        }
+    }
+}
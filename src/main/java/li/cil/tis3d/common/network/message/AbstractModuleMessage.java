@@ -0,0 +1,51 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+
+/**
+ * Base class for messages concerning the module on a face of a casing.
+ * <p>
+ * Besides being sent on their own, these may be sent in batches, see
+ * {@link MessageModuleUpdates}, in which case only the part written by
+ * {@link #toModuleBytes(ByteBuf)} is sent, without the location.
+ */
+public abstract class AbstractModuleMessage extends AbstractMessageWithLocation {
+    protected AbstractModuleMessage(final Casing casing) {
+        super(casing.getCasingWorld(), casing.getPosition());
+    }
+
+    protected AbstractModuleMessage() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    public abstract Face getFace();
+
+    /**
+     * Free any resources held by the message, called once it was sent or
+     * processed, or dropped.
+     */
+    public void release() {
+    }
+
+    protected abstract void fromModuleBytes(final ByteBuf buf);
+
+    protected abstract void toModuleBytes(final ByteBuf buf);
+
+    // --------------------------------------------------------------------- //
+    // IMessage
+
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+        super.fromBytes(buf);
+        fromModuleBytes(buf);
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+        super.toBytes(buf);
+        toModuleBytes(buf);
+    }
+}
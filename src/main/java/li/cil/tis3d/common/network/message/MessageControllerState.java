@@ -0,0 +1,39 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.common.tile.TileEntityController;
+
+public final class MessageControllerState extends AbstractMessageWithLocation {
+    private boolean isThrottled;
+
+    public MessageControllerState(final TileEntityController controller, final boolean isThrottled) {
+        super(controller.getWorld(), controller.getPos());
+        this.isThrottled = isThrottled;
+    }
+
+    public MessageControllerState() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    public boolean isThrottled() {
+        return isThrottled;
+    }
+
+    // --------------------------------------------------------------------- //
+    // IMessage
+
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+        super.fromBytes(buf);
+
+        isThrottled = buf.readBoolean();
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+        super.toBytes(buf);
+
+        buf.writeBoolean(isThrottled);
+    }
+}
@@ -0,0 +1,94 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+
+import java.util.Optional;
+
+/**
+ * Compact update of the state of an execution module, sent whenever it
+ * changes while the module is running.
+ * <p>
+ * Program counter and registers are sent as a byte and shorts, which always
+ * suffices due to the limits on program length and register values. Face,
+ * last port and module state are packed into a single byte.
+ */
+public final class MessageExecutionState extends AbstractModuleMessage {
+    private static final int FACE_BITS = 3;
+    private static final int LAST_BITS = 3;
+    private static final int FACE_MASK = (1 << FACE_BITS) - 1;
+    private static final int LAST_MASK = (1 << LAST_BITS) - 1;
+
+    private Face face;
+    private int pc;
+    private int acc;
+    private int bak;
+    private Optional<Port> last;
+    private int state;
+
+    public MessageExecutionState(final Casing casing, final Face face, final int pc, final int acc, final int bak, final Optional<Port> last, final int state) {
+        super(casing);
+        this.face = face;
+        this.pc = pc;
+        this.acc = acc;
+        this.bak = bak;
+        this.last = last;
+        this.state = state;
+    }
+
+    public MessageExecutionState() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Override
+    public Face getFace() {
+        return face;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+
+    public int getAcc() {
+        return acc;
+    }
+
+    public int getBak() {
+        return bak;
+    }
+
+    public Optional<Port> getLast() {
+        return last;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    // --------------------------------------------------------------------- //
+    // AbstractModuleMessage
+
+    @Override
+    protected void fromModuleBytes(final ByteBuf buf) {
+        final int packed = buf.readUnsignedByte();
+        face = Face.VALUES[Math.min(packed & FACE_MASK, Face.VALUES.length - 1)];
+        final int lastIndex = (packed >> FACE_BITS) & LAST_MASK;
+        last = lastIndex > 0 && lastIndex <= Port.VALUES.length ? Optional.of(Port.VALUES[lastIndex - 1]) : Optional.empty();
+        state = packed >> (FACE_BITS + LAST_BITS);
+        pc = buf.readUnsignedByte();
+        acc = buf.readShort();
+        bak = buf.readShort();
+    }
+
+    @Override
+    protected void toModuleBytes(final ByteBuf buf) {
+        final int lastIndex = last.map(port -> port.ordinal() + 1).orElse(0);
+        buf.writeByte(face.ordinal() | (lastIndex << FACE_BITS) | (state << (FACE_BITS + LAST_BITS)));
+        buf.writeByte(pc);
+        buf.writeShort(acc);
+        buf.writeShort(bak);
+    }
+}
@@ -0,0 +1,58 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import net.minecraft.network.PacketBuffer;
+
+public final class MessageModuleByteData extends AbstractModuleMessage {
+    private Face face;
+    private ByteBuf data;
+
+    public MessageModuleByteData(final Casing casing, final Face face, final ByteBuf data) {
+        super(casing);
+        this.face = face;
+        this.data = data;
+    }
+
+    public MessageModuleByteData() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    @Override
+    public Face getFace() {
+        return face;
+    }
+
+    public ByteBuf getData() {
+        return data;
+    }
+
+    @Override
+    public void release() {
+        if (data != null) {
+            data.release();
+            data = null;
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+    // AbstractModuleMessage
+
+    @Override
+    protected void fromModuleBytes(final ByteBuf buf) {
+        final PacketBuffer buffer = new PacketBuffer(buf);
+        face = buffer.readEnumValue(Face.class);
+        data = buffer.readBytes(buffer.readVarIntFromBuffer());
+    }
+
+    @Override
+    protected void toModuleBytes(final ByteBuf buf) {
+        final PacketBuffer buffer = new PacketBuffer(buf);
+        buffer.writeEnumValue(face);
+        buffer.writeVarIntToBuffer(data.readableBytes());
+        // Don't move the reader index, batches may be written multiple times.
+        buffer.writeBytes(data, data.readerIndex(), data.readableBytes());
+    }
+}
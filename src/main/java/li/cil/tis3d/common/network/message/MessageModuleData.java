@@ -8,12 +8,12 @@ import net.minecraft.network.PacketBuffer;
 
 import java.io.IOException;
 
-public final class MessageModuleData extends AbstractMessageWithLocation {
+public final class MessageModuleData extends AbstractModuleMessage {
     private Face face;
     private NBTTagCompound nbt;
 
     public MessageModuleData(final Casing casing, final Face face, final NBTTagCompound nbt) {
-        super(casing.getCasingWorld(), casing.getPosition());
+        super(casing);
         this.face = face;
         this.nbt = nbt;
     }
@@ -23,6 +23,7 @@ public final class MessageModuleData extends AbstractMessageWithLocation {
 
     // --------------------------------------------------------------------- //
 
+    @Override
     public Face getFace() {
         return face;
     }
@@ -32,12 +33,10 @@ public final class MessageModuleData extends AbstractMessageWithLocation {
     }
 
     // --------------------------------------------------------------------- //
-    // IMessage
+    // AbstractModuleMessage
 
     @Override
-    public void fromBytes(final ByteBuf buf) {
-        super.fromBytes(buf);
-
+    protected void fromModuleBytes(final ByteBuf buf) {
         final PacketBuffer buffer = new PacketBuffer(buf);
         face = buffer.readEnumValue(Face.class);
         try {
@@ -48,9 +47,7 @@ public final class MessageModuleData extends AbstractMessageWithLocation {
     }
 
     @Override
-    public void toBytes(final ByteBuf buf) {
-        super.toBytes(buf);
-
+    protected void toModuleBytes(final ByteBuf buf) {
         final PacketBuffer buffer = new PacketBuffer(buf);
         buffer.writeEnumValue(face);
         buffer.writeNBTTagCompoundToBuffer(nbt);
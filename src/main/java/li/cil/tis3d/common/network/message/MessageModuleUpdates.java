@@ -0,0 +1,115 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Batch of module messages sent by the casings of a controller in a tick.
+ * <p>
+ * Messages are grouped by casing, so the location of each casing is only
+ * sent once, and each message is prefixed with its kind instead of being
+ * sent as a message of its own.
+ */
+public final class MessageModuleUpdates extends AbstractMessageWithDimension {
+    /**
+     * The kinds of messages that may be batched, indexed by their kind id.
+     */
+    private static final List<Class<? extends AbstractModuleMessage>> KINDS = Arrays.asList(
+            MessageModuleData.class,
+            MessageExecutionState.class,
+            MessageModuleByteData.class
+    );
+    private static final List<Supplier<AbstractModuleMessage>> FACTORIES = Arrays.asList(
+            MessageModuleData::new,
+            MessageExecutionState::new,
+            MessageModuleByteData::new
+    );
+
+    private List<BlockPos> positions;
+    private List<List<AbstractModuleMessage>> updates;
+
+    /**
+     * Create a new batch of module messages.
+     *
+     * @param world   the world the casings are in.
+     * @param updates the messages to send, grouped by casing.
+     */
+    public MessageModuleUpdates(final World world, final List<List<AbstractModuleMessage>> updates) {
+        super(world);
+        this.positions = new ArrayList<>(updates.size());
+        for (final List<AbstractModuleMessage> messages : updates) {
+            positions.add(messages.get(0).getPosition());
+        }
+        this.updates = updates;
+    }
+
+    public MessageModuleUpdates() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    public List<BlockPos> getPositions() {
+        return positions;
+    }
+
+    public List<List<AbstractModuleMessage>> getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Free any resources held by the messages in this batch.
+     */
+    public void release() {
+        for (final List<AbstractModuleMessage> messages : updates) {
+            messages.forEach(AbstractModuleMessage::release);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+    // IMessage
+
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+        super.fromBytes(buf);
+
+        final PacketBuffer buffer = new PacketBuffer(buf);
+        final int casingCount = buffer.readVarIntFromBuffer();
+        positions = new ArrayList<>(casingCount);
+        updates = new ArrayList<>(casingCount);
+        for (int casing = 0; casing < casingCount; casing++) {
+            positions.add(buffer.readBlockPos());
+            final int messageCount = buffer.readUnsignedByte();
+            final List<AbstractModuleMessage> messages = new ArrayList<>(messageCount);
+            for (int index = 0; index < messageCount; index++) {
+                final AbstractModuleMessage message = FACTORIES.get(buffer.readUnsignedByte()).get();
+                message.fromModuleBytes(buf);
+                messages.add(message);
+            }
+            updates.add(messages);
+        }
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+        super.toBytes(buf);
+
+        final PacketBuffer buffer = new PacketBuffer(buf);
+        buffer.writeVarIntToBuffer(updates.size());
+        for (int casing = 0; casing < updates.size(); casing++) {
+            buffer.writeBlockPos(positions.get(casing));
+            final List<AbstractModuleMessage> messages = updates.get(casing);
+            buffer.writeByte(messages.size());
+            for (final AbstractModuleMessage message : messages) {
+                buffer.writeByte(KINDS.indexOf(message.getClass()));
+                message.toModuleBytes(buf);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How often data was read from pipes in a tick, for the casings of a controller.
+ * <p>
+ * Clients derive the effects shown for transfers from this, instead of the
+ * server sending an effect for each single transfer. Pipes are sent as a bit
+ * mask per casing, which fits into three bytes for the 24 pipes of a casing,
+ * followed by the number of reads for each pipe in the mask.
+ */
+public final class MessagePipeTransfers extends AbstractMessageWithDimension {
+    private static final int PIPE_COUNT = Face.VALUES.length * Port.VALUES.length;
+
+    private List<BlockPos> positions;
+    private List<int[]> transfers;
+
+    /**
+     * Create a new message for the pipe transfers of multiple casings.
+     *
+     * @param world     the world the casings are in.
+     * @param positions the positions of the casings.
+     * @param transfers the number of reads per pipe, per casing.
+     */
+    public MessagePipeTransfers(final World world, final List<BlockPos> positions, final List<int[]> transfers) {
+        super(world);
+        this.positions = positions;
+        this.transfers = transfers;
+    }
+
+    public MessagePipeTransfers() {
+    }
+
+    // --------------------------------------------------------------------- //
+
+    public List<BlockPos> getPositions() {
+        return positions;
+    }
+
+    public List<int[]> getTransfers() {
+        return transfers;
+    }
+
+    // --------------------------------------------------------------------- //
+    // IMessage
+
+    @Override
+    public void fromBytes(final ByteBuf buf) {
+        super.fromBytes(buf);
+
+        final PacketBuffer buffer = new PacketBuffer(buf);
+        final int casingCount = buffer.readVarIntFromBuffer();
+        positions = new ArrayList<>(casingCount);
+        transfers = new ArrayList<>(casingCount);
+        for (int casing = 0; casing < casingCount; casing++) {
+            positions.add(buffer.readBlockPos());
+
+            final int[] counts = new int[PIPE_COUNT];
+            int remaining = buffer.readUnsignedMedium();
+            while (remaining != 0) {
+                final int index = Integer.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                counts[index] = buffer.readVarIntFromBuffer();
+            }
+            transfers.add(counts);
+        }
+    }
+
+    @Override
+    public void toBytes(final ByteBuf buf) {
+        super.toBytes(buf);
+
+        final PacketBuffer buffer = new PacketBuffer(buf);
+        buffer.writeVarIntToBuffer(positions.size());
+        for (int casing = 0; casing < positions.size(); casing++) {
+            buffer.writeBlockPos(positions.get(casing));
+
+            final int[] counts = transfers.get(casing);
+            int mask = 0;
+            for (int index = 0; index < counts.length; index++) {
+                if (counts[index] != 0) {
+                    mask |= 1 << index;
+                }
+            }
+            buffer.writeMedium(mask);
+            for (final int count : counts) {
+                if (count != 0) {
+                    buffer.writeVarIntToBuffer(count);
+                }
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ import li.cil.tis3d.common.machine.CasingImpl;
 import li.cil.tis3d.common.machine.CasingProxy;
 import li.cil.tis3d.common.module.ModuleForwarder;
 import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.network.message.AbstractModuleMessage;
 import li.cil.tis3d.common.network.message.MessageCasingState;
 import li.cil.tis3d.util.InventoryUtils;
 import net.minecraft.entity.player.EntityPlayer;
@@ -29,6 +30,8 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -75,6 +78,10 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
         this.controller = controller;
     }
 
+    TileEntityCasing getNeighbor(final Face face) {
+        return neighbors[face.ordinal()];
+    }
+
     public boolean isEnabled() {
         if (getWorld() == null) {
             return false;
@@ -91,6 +98,20 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
         isEnabledClient = value;
     }
 
+    /**
+     * Let the controller responsible for us know that our neighbors changed,
+     * so it can pick up newly connected casings.
+     */
+    private void updateController() {
+        if (getWorld().isRemote) {
+            return;
+        }
+        final TileEntityController controller = this.controller != null ? this.controller : findController();
+        if (controller != null) {
+            controller.attachCasings(this);
+        }
+    }
+
     public void scheduleScan() {
         if (getWorld().isRemote) {
             return;
@@ -141,6 +162,28 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
         }
     }
 
+    /**
+     * Like {@link #checkNeighbors()}, but looks up neighboring casings in the
+     * specified map instead of in the world.
+     * <p>
+     * Used by the controller after collecting all connected casings, at which
+     * point every loaded casing adjacent to one of them is in that map.
+     *
+     * @param casingsByPosition the casings of the multi-block by position.
+     */
+    void checkNeighbors(final Map<BlockPos, TileEntityCasing> casingsByPosition) {
+        for (final EnumFacing facing : EnumFacing.VALUES) {
+            final BlockPos neighborPos = getPos().offset(facing);
+            final Face face = Face.fromEnumFacing(facing);
+            setNeighbor(face, casingsByPosition.get(neighborPos));
+
+            // If we have a controller, clear the module on that face.
+            if (controller != null && neighborPos.equals(controller.getPos())) {
+                setModule(face, null);
+            }
+        }
+    }
+
     public void onEnabled() {
         casing.onEnabled();
         sendState(true);
@@ -151,14 +194,42 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
         sendState(false);
     }
 
-    public void stepModules() {
-        casing.stepModules();
-    }
-
     public void stepPipes() {
         casing.stepPipes();
     }
 
+    public void linkPipes() {
+        casing.linkPipes();
+    }
+
+    public void unlinkPipes() {
+        casing.unlinkPipes();
+    }
+
+    public int[] takePipeTransfers() {
+        return casing.takePipeTransfers();
+    }
+
+    public void beginDeferring() {
+        casing.beginDeferring();
+    }
+
+    public List<AbstractModuleMessage> endDeferring() {
+        return casing.endDeferring();
+    }
+
+    public void addDistantMessages(final List<AbstractModuleMessage> messages) {
+        casing.addDistantMessages(messages);
+    }
+
+    public List<AbstractModuleMessage> takeDistantMessages() {
+        return casing.takeDistantMessages();
+    }
+
+    public void clearDistantMessages() {
+        casing.clearDistantMessages();
+    }
+
     // --------------------------------------------------------------------- //
     // IInventory
 
@@ -203,7 +274,7 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
     public void invalidate() {
         super.invalidate();
         if (controller != null) {
-            controller.scheduleScan();
+            controller.detachCasing(this);
         }
     }
 
@@ -248,7 +319,7 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
         final TileEntityCasing oldNeighbor = neighbors[face.ordinal()];
         if (neighbor != oldNeighbor) {
             neighbors[face.ordinal()] = neighbor;
-            scheduleScan();
+            updateController();
         }
 
         // Ensure there are no modules installed between two casings.
@@ -257,6 +328,9 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
             InventoryUtils.drop(neighbor.getWorld(), neighbor.getPos(), neighbor, face.getOpposite().ordinal(), neighbor.getInventoryStackLimit(), Face.toEnumFacing(face.getOpposite()));
         }
 
+        // Remember neighbor for directly linking pipes across casings.
+        casing.setNeighbor(face, neighbor != null ? neighbor.casing : null);
+
         // Adjust ports, connecting multiple casings.
         if (neighbor == null) {
             // No neighbor, remove the virtual connector module.
@@ -267,7 +341,7 @@ public final class TileEntityCasing extends TileEntity implements SidedInventory
             if (oldNeighbor != null && oldNeighbor.casing.getModule(face.getOpposite()) instanceof ModuleForwarder) {
                 oldNeighbor.casing.setModule(face.getOpposite(), null);
             }
-        } else if (!(casing.getModule(face) instanceof ModuleForwarder)) {
+        } else if (!Settings.linkCasingPipes && !(casing.getModule(face) instanceof ModuleForwarder)) {
             // Got a new connection, and we have not yet been set up by our
             // neighbor. Create a virtual module that will be responsible
             // for transferring data between the two casings.
@@ -1,16 +1,36 @@
 package li.cil.tis3d.common.tile;
 
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.api.module.Passive;
 import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.event.TickHandlerControllers;
+import li.cil.tis3d.common.machine.ClosedModule;
+import li.cil.tis3d.common.machine.ConfinedModule;
+import li.cil.tis3d.common.machine.ParallelSchedule;
+import li.cil.tis3d.common.network.Network;
+import li.cil.tis3d.common.network.message.AbstractModuleMessage;
+import li.cil.tis3d.common.network.message.MessageControllerState;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.NetworkManager;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S35PacketUpdateTileEntity;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.BlockPos;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
+import net.minecraftforge.fml.common.network.NetworkRegistry;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -21,13 +41,53 @@ import java.util.Set;
  * itself or by a connected casing. Manages a list of casings and updates
  * the modules in the casing (this is the only ticking part of a multi-block).
  * <p>
+ * Once operational, casings added to or removed from the multi-block are
+ * attached and detached incrementally, without resetting the other casings.
+ * <p>
  * Controllers have no real state. They are active when powered by a redstone
  * signal, and can be reset by right-clicking them.
  */
 public final class TileEntityController extends TileEntity implements ITickable {
+    // --------------------------------------------------------------------- //
+    // Persisted data
+
+    /**
+     * The positions of the casings we controlled when we were last operational,
+     * packed as consecutive x, y, z triples, or <tt>null</tt> if there are none.
+     * <p>
+     * Used to restore the multi-block without a scan once these casings are
+     * loaded again and turn out to be unchanged, after we were loaded.
+     */
+    private int[] cachedCasings;
+
     // --------------------------------------------------------------------- //
     // Computed data
 
+    // NBT tag names.
+    private static final String TAG_CASINGS = "casings";
+    private static final String TAG_CASINGS_HASH = "casingsHash";
+    private static final String TAG_THROTTLED = "throttled";
+
+    /**
+     * The maximum number of steps we keep deferred while being throttled,
+     * which is about one second of stepping at full speed. Multiplied by
+     * the {@link Settings#turboMultiplier} for closed machines.
+     */
+    private static final int MAX_SCHEDULED_STEPS = 100;
+
+    /**
+     * The interval in ticks in which module updates are sent to players not
+     * within {@link Network#RANGE_DETAIL} of a casing.
+     */
+    private static final int DISTANT_SYNC_INTERVAL = 10;
+
+    /**
+     * The maximum number of ticks to wait for {@link #cachedCasings} to be
+     * loaded before scanning anyway, as some of them may be out of range of
+     * any player, in which case we run with what is loaded.
+     */
+    private static final int MAX_CACHE_WAIT_TICKS = 100;
+
     /**
      * Possible states of a controller.
      */
@@ -63,10 +123,114 @@ public final class TileEntityController extends TileEntity implements ITickable
         RUNNING
     }
 
+    /**
+     * The order in which casings are kept in {@link #casings}.
+     */
+    private static final Comparator<TileEntity> POSITION_ORDER = Comparator.comparing(TileEntity::getPos);
+
     /**
      * The list of casings managed by this controller.
      */
-    private final List<TileEntityCasing> casings = new ArrayList<>(Settings.maxCasingsPerController);
+    private final List<TileEntityCasing> casings = new ArrayList<>();
+
+    /**
+     * List of processed tile entities to avoid loops when searching for casings.
+     * <p>
+     * This and {@link #queue} are kept around instead of being reallocated for
+     * each search, and are cleared when a search is done.
+     */
+    private final Set<TileEntity> processed = new HashSet<>();
+
+    /**
+     * List of pending tile entities that still need to be scanned.
+     */
+    private final Queue<TileEntity> queue = new ArrayDeque<>();
+
+    /**
+     * The casings found in a scan by position, used to let them look up their
+     * neighbors without querying the world again. Cleared after each scan.
+     */
+    private final Map<BlockPos, TileEntityCasing> casingsByPosition = new HashMap<>();
+
+    /**
+     * The flat list of modules to step, in the order of {@link #casings} and
+     * then faces, excluding empty faces and {@link Passive} modules.
+     * <p>
+     * This is <tt>null</tt> while it needs to be rebuilt, i.e. after a scan
+     * or after a module in one of our casings changed.
+     */
+    private Module[] schedule;
+
+    /**
+     * The casings with at least one module installed, in the order of
+     * {@link #casings}. Pipes of casings without modules never change, so
+     * only these need their pipes stepped. Rebuilt along with {@link #schedule}.
+     */
+    private TileEntityCasing[] pipeSchedule;
+
+    /**
+     * The {@link #schedule} split up for stepping in parallel, if the
+     * controller has at least {@link Settings#parallelModuleThreshold}
+     * modules and they can be split up, <tt>null</tt> otherwise. Rebuilt
+     * along with {@link #schedule}.
+     */
+    private ParallelSchedule parallelSchedule;
+
+    /**
+     * Whether all modules in our casings are {@link ClosedModule}s, allowing
+     * us to step them in turbo mode. Rebuilt along with {@link #schedule}.
+     */
+    private boolean isClosed;
+
+    /**
+     * Whether all modules in our casings are {@link ConfinedModule}s, allowing
+     * us to be stepped on a worker thread. Rebuilt along with {@link #schedule}.
+     */
+    private boolean isConfined;
+
+    /**
+     * Whether the pipes of our casings have been linked for the current set
+     * of casings, when {@link Settings#linkCasingPipes} is enabled. Pipes are
+     * relinked along with rebuilding the {@link #schedule} otherwise.
+     */
+    private boolean isLinked;
+
+    /**
+     * The number of steps to perform at the end of the tick, when
+     * {@link Settings#parallelControllers} is enabled or stepping is limited
+     * by {@link Settings#controllerBudget}. This includes steps deferred in
+     * previous ticks due to the budget being used up.
+     */
+    private int scheduledSteps;
+
+    /**
+     * Whether we're registered with the {@link TickHandlerControllers} to
+     * perform our {@link #scheduledSteps} at the end of the current tick.
+     */
+    private boolean isScheduled;
+
+    /**
+     * The average time it took to step all our casings once, in nanoseconds,
+     * used to estimate how many steps fit into the budget.
+     */
+    private long averageStepTime;
+
+    /**
+     * Whether we recently had to defer steps due to the budget being used
+     * up. Synchronized to the client, to show players why we're slow.
+     */
+    private boolean isThrottled;
+
+    /**
+     * Whether our casings have messages waiting to be sent to players further
+     * away, see {@link #sendModuleUpdates(Map)}.
+     */
+    private boolean hasDistantUpdates;
+
+    /**
+     * The number of ticks we have been waiting for cached casings to load.
+     */
+    private int cacheWaitTicks;
 
     /**
      * The current state of the controller.
@@ -95,6 +259,248 @@ public final class TileEntityController extends TileEntity implements ITickable
         }
     }
 
+    /**
+     * Schedule a rebuild of the list of modules to step.
+     * <p>
+     * Called by casings when a module is installed or removed.
+     */
+    public void invalidateSchedule() {
+        schedule = null;
+        pipeSchedule = null;
+        parallelSchedule = null;
+    }
+
+    /**
+     * Add casings newly connected to the specified casing to the multi-block.
+     * <p>
+     * Called by casings when their neighbors change. Only the part of the
+     * multi-block we don't know yet is searched, and modules in casings we
+     * already control keep running undisturbed. If we're not operational or
+     * the new part isn't valid (e.g. it contains another controller), this
+     * falls back to a full rescan.
+     *
+     * @param origin the casing whose neighbors changed.
+     */
+    public void attachCasings(final TileEntityCasing origin) {
+        if (state != ControllerState.READY && state != ControllerState.RUNNING) {
+            scheduleScan();
+            return;
+        }
+
+        // List of casings we don't control yet.
+        final List<TileEntityCasing> added = new ArrayList<>();
+
+        processed.add(origin);
+        queue.add(origin);
+        try {
+            while (!queue.isEmpty()) {
+                final TileEntity tileEntity = queue.remove();
+                if (tileEntity instanceof TileEntityController) {
+                    if (tileEntity != this) {
+                        // Connected to another controller, let the scan sort it out.
+                        scheduleScan();
+                        return;
+                    }
+                } else /* if (tileEntity instanceof TileEntityCasing) */ {
+                    final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+                    if (casing.getController() == this) {
+                        // Don't search through the part of the multi-block we know.
+                        if (casing != origin) {
+                            continue;
+                        }
+                    } else {
+                        // We only allow a certain number of casings per multi-block.
+                        if (casings.size() + added.size() + 1 > Settings.maxCasingsPerController) {
+                            scheduleScan();
+                            return;
+                        }
+                        added.add(casing);
+                    }
+                    addNeighbors(casing, processed, queue);
+                }
+            }
+        } finally {
+            processed.clear();
+            queue.clear();
+        }
+
+        if (!added.isEmpty()) {
+            // Sorting the new casings first leaves two sorted runs in our list
+            // of casings, which are merged in linear time when sorting it.
+            added.sort(POSITION_ORDER);
+            for (final TileEntityCasing casing : added) {
+                casing.setController(this);
+                casings.add(casing);
+            }
+
+            // Ensure our new casings know their neighbors. This may lead to a
+            // rescan, in which case we're done here.
+            added.forEach(TileEntityCasing::checkNeighbors);
+            if (state != ControllerState.READY && state != ControllerState.RUNNING) {
+                return;
+            }
+
+            casings.sort(POSITION_ORDER);
+
+            if (state == ControllerState.RUNNING) {
+                added.forEach(TileEntityCasing::onEnabled);
+            }
+
+            // Make sure our new casings get saved.
+            markDirty();
+        }
+
+        // Neighbors changed, so pipes may need relinking.
+        invalidateTopology();
+    }
+
+    /**
+     * Remove the specified casing from the multi-block.
+     * <p>
+     * Called by casings when they are removed from the world. Casings that
+     * were only connected to us via the removed casing are removed as well,
+     * modules in all other casings keep running undisturbed.
+     *
+     * @param casing the casing that was removed.
+     */
+    public void detachCasing(final TileEntityCasing casing) {
+        if (state != ControllerState.READY && state != ControllerState.RUNNING) {
+            scheduleScan();
+            return;
+        }
+        if (casing.getController() != this) {
+            return;
+        }
+
+        // Count the connections of the removed casing into the multi-block.
+        // If there was at most one it can't have been holding two parts of
+        // the multi-block together.
+        int connections = 0;
+        for (final EnumFacing facing : EnumFacing.VALUES) {
+            if (getPos().offset(facing).equals(casing.getPos())) {
+                connections++;
+            }
+        }
+        for (final Face face : Face.VALUES) {
+            final TileEntityCasing neighbor = casing.getNeighbor(face);
+            if (neighbor != null && neighbor.getController() == this) {
+                connections++;
+            }
+        }
+
+        // Our casings are sorted by position, so find the casing by binary
+        // search instead of comparing it against each casing in turn.
+        final int index = Collections.binarySearch(casings, casing, POSITION_ORDER);
+        if (index >= 0) {
+            casings.remove(index);
+        }
+        release(Collections.singletonList(casing));
+
+        if (connections > 1) {
+            removeDisconnectedCasings();
+        }
+
+        invalidateTopology();
+        markDirty();
+    }
+
+    /**
+     * Get the number of steps waiting to be performed at the end of the tick.
+     *
+     * @return the number of scheduled steps.
+     */
+    public int getScheduledSteps() {
+        return scheduledSteps;
+    }
+
+    /**
+     * Get the average time it took to step all our casings once.
+     *
+     * @return the average time per step, in nanoseconds.
+     */
+    public long getAverageStepTime() {
+        return averageStepTime;
+    }
+
+    /**
+     * Perform up to the specified number of the steps scheduled in this tick,
+     * deferring the remaining ones to the next tick. Called by the
+     * {@link TickHandlerControllers} at the end of the tick, possibly from a
+     * worker thread.
+     *
+     * @param maxSteps the maximum number of steps to perform.
+     * @return the time it took to perform the steps, in nanoseconds.
+     */
+    public long stepScheduled(final int maxSteps) {
+        isScheduled = false;
+
+        // We may have been disabled or removed since scheduling the steps.
+        if (isInvalid() || state != ControllerState.RUNNING) {
+            scheduledSteps = 0;
+            return 0;
+        }
+
+        final int steps = Math.min(maxSteps, scheduledSteps);
+        scheduledSteps -= steps;
+        setThrottled(scheduledSteps > 0);
+        if (steps == 0) {
+            return 0;
+        }
+
+        final long start = System.nanoTime();
+        stepCasings(steps);
+        final long elapsed = System.nanoTime() - start;
+
+        // Exponential moving average, so we adapt to programs changing.
+        final long stepTime = elapsed / steps;
+        averageStepTime = averageStepTime == 0 ? stepTime : (averageStepTime * 7 + stepTime) / 8;
+
+        return elapsed;
+    }
+
+    /**
+     * Whether all modules in our casings only interact with the world via
+     * their casing or {@link TickHandlerControllers#runOnServerThread(Runnable)},
+     * so that we may be stepped on a worker thread.
+     *
+     * @return whether we may be stepped on a worker thread.
+     */
+    public boolean isConfined() {
+        if (schedule == null) {
+            buildSchedule();
+        }
+        return isConfined;
+    }
+
+    /**
+     * Whether we recently had to defer steps due to the tick budget being used up.
+     *
+     * @return whether we're being throttled.
+     */
+    public boolean isThrottled() {
+        return isThrottled;
+    }
+
+    /**
+     * Set whether we're being throttled. Called on the server when stepping,
+     * and on the client when receiving the state from the server.
+     *
+     * @param value whether we're being throttled.
+     */
+    public void setThrottled(final boolean value) {
+        if (value == isThrottled) {
+            return;
+        }
+        isThrottled = value;
+        if (!getWorld().isRemote) {
+            TickHandlerControllers.INSTANCE.runOnServerThread(() -> {
+                final MessageControllerState message = new MessageControllerState(this, value);
+                final NetworkRegistry.TargetPoint point = Network.getTargetPoint(this, Network.RANGE_MEDIUM);
+                Network.INSTANCE.getWrapper().sendToAllAround(message, point);
+            });
+        }
+    }
+
     // --------------------------------------------------------------------- //
     // TileEntity
 
@@ -110,6 +516,44 @@ public final class TileEntityController extends TileEntity implements ITickable
         dispose();
     }
 
+    @Override
+    public void readFromNBT(final NBTTagCompound nbt) {
+        super.readFromNBT(nbt);
+
+        cachedCasings = null;
+        cacheWaitTicks = 0;
+        if (nbt.hasKey(TAG_CASINGS)) {
+            final int[] positions = nbt.getIntArray(TAG_CASINGS);
+            if (positions.length % 3 == 0 && Arrays.hashCode(positions) == nbt.getInteger(TAG_CASINGS_HASH)) {
+                cachedCasings = positions;
+            }
+        }
+    }
+
+    @Override
+    public void writeToNBT(final NBTTagCompound nbt) {
+        super.writeToNBT(nbt);
+
+        final int[] positions = (state == ControllerState.READY || state == ControllerState.RUNNING) ? packCasings() : cachedCasings;
+        if (positions != null) {
+            nbt.setIntArray(TAG_CASINGS, positions);
+            nbt.setInteger(TAG_CASINGS_HASH, Arrays.hashCode(positions));
+        }
+    }
+
+    @Override
+    public void onDataPacket(final NetworkManager manager, final S35PacketUpdateTileEntity packet) {
+        final NBTTagCompound nbt = packet.getNbtCompound();
+        isThrottled = nbt.getBoolean(TAG_THROTTLED);
+    }
+
+    @Override
+    public Packet getDescriptionPacket() {
+        final NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setBoolean(TAG_THROTTLED, isThrottled);
+        return new S35PacketUpdateTileEntity(pos, -1, nbt);
+    }
+
     // --------------------------------------------------------------------- //
     // ITickable
 
@@ -122,7 +566,21 @@ public final class TileEntityController extends TileEntity implements ITickable
 
         // Check if we need to rescan our multi-block structure.
         if (state == ControllerState.SCANNING) {
-            scan();
+            if (cachedCasings != null) {
+                // Wait for the casings we had before to be loaded, then check
+                // if they're still the same. This is a lot cheaper than
+                // repeatedly scanning while our surroundings are being loaded.
+                final boolean isLoaded = isCacheLoaded();
+                if (!isLoaded && ++cacheWaitTicks < MAX_CACHE_WAIT_TICKS) {
+                    return;
+                }
+                if (!isLoaded || !restore()) {
+                    cachedCasings = null;
+                    scan();
+                }
+            } else {
+                scan();
+            }
         }
 
         // Stop if we're in an invalid state.
@@ -130,6 +588,10 @@ public final class TileEntityController extends TileEntity implements ITickable
             return;
         }
 
+        if (hasDistantUpdates && getWorld().getTotalWorldTime() % DISTANT_SYNC_INTERVAL == 0) {
+            sendDistantUpdates();
+        }
+
         // Get accumulated redstone power coming in.
         final int power = computePower();
 
@@ -151,6 +613,8 @@ public final class TileEntityController extends TileEntity implements ITickable
             if (!getWorld().isBlockPowered(getPos())) {
                 // Nope, fall back to ready state, disable modules.
                 state = ControllerState.READY;
+                scheduledSteps = 0;
+                setThrottled(false);
                 casings.forEach(TileEntityCasing::onDisabled);
             } else if (power > 1) {
                 // 0 = off, we never have this or we'd be in the READY state.
@@ -162,15 +626,12 @@ public final class TileEntityController extends TileEntity implements ITickable
                 if (power < 15) {
                     // Stepping slower than 100%.
                     final int delay = 15 - power;
-                    if (getWorld().getTotalWorldTime() % delay == 0) {
-                        stepCasings();
-                    }
+                    step(getWorld().getTotalWorldTime() % delay == 0 ? 1 : 0);
                 } else {
-                    // Stepping faster than 100%.
+                    // Stepping at or faster than 100%. Only speed up further
+                    // when actually faster, normal speed is a single step.
                     final int steps = power / 15;
-                    for (int step = 0; step < steps; step++) {
-                        stepCasings();
-                    }
+                    step(steps > 1 ? steps * getTurboMultiplier() : steps);
                 }
             }
         }
@@ -223,58 +684,197 @@ public final class TileEntityController extends TileEntity implements ITickable
      * the {@link #casings} field on success.
      */
     private void scan() {
-        // List of processed tile entities to avoid loops.
-        final Set<TileEntity> processed = new HashSet<>();
-        // List of pending tile entities that still need to be scanned.
-        final Queue<TileEntity> queue = new ArrayDeque<>();
-
         // Start at our location, keep going until there's nothing left to do.
         processed.add(this);
         queue.add(this);
-        while (!queue.isEmpty()) {
-            final TileEntity tileEntity = queue.remove();
+        try {
+            while (!queue.isEmpty()) {
+                final TileEntity tileEntity = queue.remove();
 
-            // Check what we have. We only add controllers and casings to this list,
-            // so we can skip the type check in the else branch.
-            if (tileEntity instanceof TileEntityController) {
-                if (tileEntity == this) {
-                    // Special case: first iteration, add the neighbors.
-                    if (!addNeighbors(tileEntity, processed, queue)) {
-                        clear(ControllerState.INCOMPLETE);
+                // Check what we have. We only add controllers and casings to this list,
+                // so we can skip the type check in the else branch.
+                if (tileEntity instanceof TileEntityController) {
+                    if (tileEntity == this) {
+                        // Special case: first iteration, add the neighbors.
+                        if (!addNeighbors(tileEntity, processed, queue)) {
+                            clear(ControllerState.INCOMPLETE);
+                            return;
+                        }
+                    } else {
+                        // We require there to be exactly one controller per multi-block.
+                        clear(ControllerState.MULTIPLE_CONTROLLERS);
                         return;
                     }
-                } else {
-                    // We require there to be exactly one controller per multi-block.
-                    clear(ControllerState.MULTIPLE_CONTROLLERS);
-                    return;
+                } else /* if (tileEntity instanceof TileEntityCasing) */ {
+                    // We only allow a certain number of casings per multi-block.
+                    if (casings.size() + 1 > Settings.maxCasingsPerController) {
+                        clear(ControllerState.TOO_COMPLEX);
+                        return;
+                    }
+
+                    // Register as the controller with the casing and add neighbors.
+                    final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+                    casing.setController(this);
+                    casings.add(casing);
+                    addNeighbors(casing, processed, queue);
                 }
-            } else /* if (tileEntity instanceof TileEntityCasing) */ {
-                // We only allow a certain number of casings per multi-block.
-                if (casings.size() + 1 > Settings.maxCasingsPerController) {
-                    clear(ControllerState.TOO_COMPLEX);
-                    return;
+            }
+        } finally {
+            processed.clear();
+            queue.clear();
+        }
+
+        finishScan();
+    }
+
+    /**
+     * Check whether all cached casings and our own neighbors are loaded.
+     *
+     * @return <tt>true</tt> if all of them are loaded, <tt>false</tt> otherwise.
+     */
+    private boolean isCacheLoaded() {
+        for (int i = 0; i < cachedCasings.length; i += 3) {
+            if (!getWorld().isBlockLoaded(new BlockPos(cachedCasings[i], cachedCasings[i + 1], cachedCasings[i + 2]))) {
+                return false;
+            }
+        }
+        for (final EnumFacing facing : EnumFacing.VALUES) {
+            if (!getWorld().isBlockLoaded(getPos().offset(facing))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Try to restore the multi-block from the cached casings instead of
+     * doing a full scan.
+     * <p>
+     * This succeeds if all cached casings are still there, not controlled by
+     * another controller, and no other casings or controllers are connected
+     * to them, i.e. when a scan would find exactly the same casings.
+     *
+     * @return <tt>true</tt> if the multi-block was restored, <tt>false</tt> if a scan is required.
+     */
+    private boolean restore() {
+        final int[] positions = cachedCasings;
+        cachedCasings = null;
+
+        if (positions.length / 3 > Settings.maxCasingsPerController) {
+            return false;
+        }
+
+        final Set<BlockPos> expected = new HashSet<>();
+        for (int i = 0; i < positions.length; i += 3) {
+            expected.add(new BlockPos(positions[i], positions[i + 1], positions[i + 2]));
+        }
+
+        if (!hasOnlyExpectedNeighbors(this, expected)) {
+            return false;
+        }
+
+        final List<TileEntityCasing> found = new ArrayList<>(expected.size());
+        for (final BlockPos position : expected) {
+            final TileEntity tileEntity = getWorld().getTileEntity(position);
+            if (!(tileEntity instanceof TileEntityCasing)) {
+                return false;
+            }
+            final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+            if (casing.getController() != null && casing.getController() != this) {
+                return false;
+            }
+            if (!hasOnlyExpectedNeighbors(casing, expected)) {
+                return false;
+            }
+            found.add(casing);
+        }
+
+        for (final TileEntityCasing casing : found) {
+            casing.setController(this);
+            casings.add(casing);
+        }
+
+        finishScan();
+        return true;
+    }
+
+    /**
+     * Check that the only controller adjacent to a tile entity is this one,
+     * and that all adjacent casings are in the specified set of positions.
+     * Like when scanning, unloaded neighbors are only a problem for the
+     * controller itself.
+     *
+     * @param tileEntity the tile entity to check the neighbors of.
+     * @param expected   the positions of the casings that may be adjacent.
+     * @return <tt>true</tt> if there are no unexpected neighbors, <tt>false</tt> otherwise.
+     */
+    private boolean hasOnlyExpectedNeighbors(final TileEntity tileEntity, final Set<BlockPos> expected) {
+        for (final EnumFacing facing : EnumFacing.VALUES) {
+            final BlockPos neighborPos = tileEntity.getPos().offset(facing);
+            if (!getWorld().isBlockLoaded(neighborPos)) {
+                if (tileEntity == this) {
+                    return false;
                 }
+                continue;
+            }
 
-                // Register as the controller with the casing and add neighbors.
-                final TileEntityCasing casing = (TileEntityCasing) tileEntity;
-                casing.setController(this);
-                casings.add(casing);
-                addNeighbors(casing, processed, queue);
+            final TileEntity neighborTileEntity = getWorld().getTileEntity(neighborPos);
+            if (neighborTileEntity instanceof TileEntityController && neighborTileEntity != this) {
+                return false;
+            }
+            if (neighborTileEntity instanceof TileEntityCasing && !expected.contains(neighborPos)) {
+                return false;
             }
         }
+        return true;
+    }
 
-        // Ensure our casings know their neighbors.
-        casings.forEach(TileEntityCasing::checkNeighbors);
+    /**
+     * Complete a scan or restore after {@link #casings} has been filled,
+     * entering the {@link ControllerState#READY} state.
+     */
+    private void finishScan() {
+        // Ensure our casings know their neighbors. All loaded casings adjacent
+        // to our casings are our casings, so there's no need to ask the world.
+        for (final TileEntityCasing casing : casings) {
+            casingsByPosition.put(casing.getPos(), casing);
+        }
+        for (final TileEntityCasing casing : casings) {
+            casing.checkNeighbors(casingsByPosition);
+        }
+        casingsByPosition.clear();
 
         // Sort casings for deterministic order of execution (important when modules
         // write / read from multiple ports but only want to make the data available
         // to the first [e.g. execution module's ANY target]).
-        casings.sort(Comparator.comparing(TileEntity::getPos));
+        casings.sort(POSITION_ORDER);
+
+        // Modules may have changed while we weren't looking.
+        invalidateTopology();
+
+        // Make sure our casings get saved, for restoring them after loading.
+        markDirty();
 
         // All done. Make sure this comes after the checkNeighbors or we get CMEs!
         state = ControllerState.READY;
     }
 
+    /**
+     * Pack the positions of our casings for {@link #cachedCasings}.
+     *
+     * @return the packed positions.
+     */
+    private int[] packCasings() {
+        final int[] positions = new int[casings.size() * 3];
+        for (int i = 0; i < casings.size(); i++) {
+            final BlockPos position = casings.get(i).getPos();
+            positions[i * 3] = position.getX();
+            positions[i * 3 + 1] = position.getY();
+            positions[i * 3 + 2] = position.getZ();
+        }
+        return positions;
+    }
+
     /**
      * Compute the <em>accumulative</em> redstone power applied to the controller.
      *
@@ -288,12 +888,279 @@ public final class TileEntityController extends TileEntity implements ITickable
         return acc;
     }
 
+    /**
+     * Advance all casings by the specified number of steps, either right away
+     * or, when stepping controllers in parallel or limiting the time spent
+     * stepping, at the end of the tick.
+     *
+     * @param steps the number of steps to perform.
+     */
+    private void step(final int steps) {
+        if (Settings.parallelControllers || Settings.controllerBudget > 0) {
+            // Steps deferred in previous ticks are kept until performed, so
+            // also register if we have no new steps this tick.
+            scheduledSteps = Math.min(scheduledSteps + steps, MAX_SCHEDULED_STEPS * getTurboMultiplier());
+            if (scheduledSteps > 0 && !isScheduled) {
+                isScheduled = true;
+                TickHandlerControllers.INSTANCE.scheduleStep(this);
+            }
+        } else {
+            stepCasings(steps);
+        }
+    }
+
+    /**
+     * Get the factor to multiply our steps with when stepping faster than
+     * normal speed, which is only larger than one for closed machines.
+     *
+     * @return the factor to multiply our steps with.
+     */
+    private int getTurboMultiplier() {
+        if (Settings.turboMultiplier <= 1) {
+            return 1;
+        }
+        if (schedule == null) {
+            buildSchedule();
+        }
+        return isClosed ? Settings.turboMultiplier : 1;
+    }
+
+    /**
+     * Advance all casings by the specified number of steps.
+     * <p>
+     * Casings are only marked dirty once, after the last step, and the latest
+     * data sent by their modules is sent to clients in a single batch, see
+     * {@link #sendModuleUpdates(Map)}. Likewise, the pipes data was read from
+     * are sent once, for clients to show the transfers.
+     *
+     * @param steps the number of steps to perform.
+     */
+    private void stepCasings(final int steps) {
+        if (steps < 1) {
+            return;
+        }
+        if (schedule == null) {
+            buildSchedule();
+        }
+
+        final TileEntityCasing[] deferringCasings = pipeSchedule;
+        for (final TileEntityCasing casing : deferringCasings) {
+            casing.beginDeferring();
+        }
+        try {
+            for (int step = 0; step < steps; step++) {
+                stepCasings();
+            }
+        } finally {
+            final Map<TileEntityCasing, List<AbstractModuleMessage>> updates = new LinkedHashMap<>();
+            for (final TileEntityCasing casing : deferringCasings) {
+                final List<AbstractModuleMessage> messages = casing.endDeferring();
+                if (messages != null) {
+                    updates.put(casing, messages);
+                }
+            }
+            if (!updates.isEmpty()) {
+                TickHandlerControllers.INSTANCE.runOnServerThread(() -> sendModuleUpdates(updates));
+            }
+
+            final List<BlockPos> transferPositions = new ArrayList<>();
+            final List<int[]> transfers = new ArrayList<>();
+            for (final TileEntityCasing casing : deferringCasings) {
+                final int[] casingTransfers = casing.takePipeTransfers();
+                if (casingTransfers != null) {
+                    transfers.add(casingTransfers);
+                    transferPositions.add(casing.getPos());
+                }
+            }
+            if (!transferPositions.isEmpty()) {
+                TickHandlerControllers.INSTANCE.runOnServerThread(() -> Network.INSTANCE.sendPipeTransfers(getWorld(), transferPositions, transfers, Network.RANGE_LOW));
+            }
+        }
+    }
+
+    /**
+     * Send the messages sent by modules while stepping to players close to
+     * their casings right away, and remember them for players further away.
+     * <p>
+     * Players further away only see a rough state of modules, so they get
+     * the latest messages in longer intervals, which keeps busy machines from
+     * flooding all players around them. Players close by already got each
+     * message, so they are skipped when sending these, see {@link #sendDistantUpdates()}.
+     *
+     * @param updates the messages sent by the modules of each casing.
+     */
+    private void sendModuleUpdates(final Map<TileEntityCasing, List<AbstractModuleMessage>> updates) {
+        Network.INSTANCE.sendModuleUpdates(getWorld(), new ArrayList<>(updates.values()), 0, Network.RANGE_DETAIL);
+
+        // We may have been removed by another controller's side effects.
+        if (isInvalid() || state != ControllerState.RUNNING) {
+            updates.values().forEach(messages -> messages.forEach(AbstractModuleMessage::release));
+            return;
+        }
+
+        updates.forEach(TileEntityCasing::addDistantMessages);
+        hasDistantUpdates = true;
+    }
+
+    /**
+     * Send the latest messages sent by modules since the last call to all
+     * players in range that did not get them right away, then release them.
+     */
+    private void sendDistantUpdates() {
+        final List<List<AbstractModuleMessage>> updates = new ArrayList<>();
+        for (final TileEntityCasing casing : casings) {
+            final List<AbstractModuleMessage> messages = casing.takeDistantMessages();
+            if (messages != null) {
+                updates.add(messages);
+            }
+        }
+        Network.INSTANCE.sendModuleUpdates(getWorld(), updates, Network.RANGE_DETAIL, Network.RANGE_MEDIUM);
+        updates.forEach(messages -> messages.forEach(AbstractModuleMessage::release));
+        hasDistantUpdates = false;
+    }
+
+    /**
+     * Release the messages waiting to be sent to players further away.
+     */
+    private void clearDistantUpdates() {
+        if (hasDistantUpdates) {
+            casings.forEach(TileEntityCasing::clearDistantMessages);
+            hasDistantUpdates = false;
+        }
+    }
+
     /**
      * Advance all casings by one step.
      */
     private void stepCasings() {
-        casings.forEach(TileEntityCasing::stepModules);
-        casings.forEach(TileEntityCasing::stepPipes);
+        if (schedule == null) {
+            buildSchedule();
+        }
+
+        if (parallelSchedule != null) {
+            parallelSchedule.step();
+        } else {
+            for (final Module module : schedule) {
+                module.step();
+            }
+        }
+        for (final TileEntityCasing casing : pipeSchedule) {
+            casing.stepPipes();
+        }
+    }
+
+    /**
+     * Collect the modules to step and the casings to step the pipes of into
+     * {@link #schedule} and {@link #pipeSchedule}.
+     */
+    private void buildSchedule() {
+        // Connect modules across casings directly, if so configured. Pipes may
+        // span any number of casings, so only start linking once all casings
+        // have been reset, as linking also modifies neighboring casings.
+        if (Settings.linkCasingPipes && !isLinked) {
+            casings.forEach(TileEntityCasing::unlinkPipes);
+            casings.forEach(TileEntityCasing::linkPipes);
+            isLinked = true;
+        }
+
+        final List<Module> modules = new ArrayList<>();
+        final List<TileEntityCasing> pipeCasings = new ArrayList<>();
+        isClosed = true;
+        isConfined = true;
+        for (final TileEntityCasing casing : casings) {
+            boolean hasModules = false;
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module == null) {
+                    continue;
+                }
+                hasModules = true;
+                isClosed &= module instanceof ClosedModule;
+                isConfined &= module instanceof ConfinedModule;
+                if (!(module instanceof Passive)) {
+                    modules.add(module);
+                }
+            }
+            if (hasModules) {
+                pipeCasings.add(casing);
+            }
+        }
+        schedule = modules.toArray(new Module[modules.size()]);
+        pipeSchedule = pipeCasings.toArray(new TileEntityCasing[pipeCasings.size()]);
+        if (Settings.parallelModuleThreshold > 0 && schedule.length >= Settings.parallelModuleThreshold) {
+            parallelSchedule = ParallelSchedule.build(schedule, TickHandlerControllers.INSTANCE.getParallelism());
+        }
+    }
+
+    /**
+     * Schedule a rebuild of the list of modules to step and a relink of our
+     * casings' pipes, after the set of casings or their neighbors changed.
+     */
+    private void invalidateTopology() {
+        isLinked = false;
+        invalidateSchedule();
+    }
+
+    /**
+     * Remove all casings no longer connected to us from the multi-block.
+     * <p>
+     * This only follows the neighbors known to our casings, so unlike a scan
+     * this does not need to query the world for each casing.
+     */
+    private void removeDisconnectedCasings() {
+        final List<TileEntityCasing> disconnected = new ArrayList<>();
+        try {
+            for (final EnumFacing facing : EnumFacing.VALUES) {
+                final TileEntity tileEntity = getWorld().getTileEntity(getPos().offset(facing));
+                if (tileEntity instanceof TileEntityCasing) {
+                    final TileEntityCasing casing = (TileEntityCasing) tileEntity;
+                    if (casing.getController() == this && processed.add(casing)) {
+                        queue.add(casing);
+                    }
+                }
+            }
+            while (!queue.isEmpty()) {
+                final TileEntityCasing casing = (TileEntityCasing) queue.remove();
+                for (final Face face : Face.VALUES) {
+                    final TileEntityCasing neighbor = casing.getNeighbor(face);
+                    if (neighbor != null && neighbor.getController() == this && processed.add(neighbor)) {
+                        queue.add(neighbor);
+                    }
+                }
+            }
+
+            if (processed.size() == casings.size()) {
+                return;
+            }
+
+            for (final TileEntityCasing casing : casings) {
+                if (!processed.contains(casing)) {
+                    disconnected.add(casing);
+                }
+            }
+            casings.removeIf(casing -> !processed.contains(casing));
+        } finally {
+            processed.clear();
+            queue.clear();
+        }
+
+        release(disconnected);
+    }
+
+    /**
+     * Release the specified casings, which must already have been removed
+     * from our list of casings, disabling their modules if we're running.
+     *
+     * @param released the casings to release.
+     */
+    private void release(final List<TileEntityCasing> released) {
+        for (final TileEntityCasing casing : released) {
+            casing.setController(null);
+            casing.unlinkPipes();
+        }
+        if (state == ControllerState.RUNNING) {
+            released.forEach(TileEntityCasing::onDisabled);
+        }
     }
 
     /**
@@ -303,8 +1170,11 @@ public final class TileEntityController extends TileEntity implements ITickable
      * @param toState the state to enter after clearing.
      */
     private void clear(final ControllerState toState) {
+        clearDistantUpdates();
+
         for (final TileEntityCasing casing : casings) {
             casing.setController(null);
+            casing.unlinkPipes();
         }
 
         // Disable modules if our old controller was active.
@@ -316,6 +1186,11 @@ public final class TileEntityController extends TileEntity implements ITickable
             casings.clear();
         }
 
+        invalidateTopology();
+
+        scheduledSteps = 0;
+        setThrottled(false);
+
         state = toState;
     }
 
@@ -323,11 +1198,19 @@ public final class TileEntityController extends TileEntity implements ITickable
      * Clean up the controller state and any casings controlled by it.
      */
     private void dispose() {
+        // Remember our casings, so they are saved if we're being unloaded,
+        // as this happens before we are saved.
+        if (state == ControllerState.READY || state == ControllerState.RUNNING) {
+            cachedCasings = packCasings();
+        }
+
         // If we were in an active state, deactivate all modules in connected cases.
         if (state == ControllerState.RUNNING) {
             casings.forEach(TileEntityCasing::onDisabled);
         }
 
+        clearDistantUpdates();
+
         // Tell our neighbors about our untimely death.
         for (final EnumFacing facing : EnumFacing.VALUES) {
             final BlockPos neighborPos = getPos().offset(facing);
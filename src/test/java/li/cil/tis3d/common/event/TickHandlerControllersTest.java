@@ -0,0 +1,107 @@
+package li.cil.tis3d.common.event;
+
+import li.cil.tis3d.common.Settings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks steps are handed out to controllers evenly, one per controller in
+ * turns, and no controller is starved, even if its steps take longer than
+ * the whole budget.
+ */
+public class TickHandlerControllersTest {
+    private float controllerBudget;
+
+    @Before
+    public void setUp() {
+        controllerBudget = Settings.controllerBudget;
+
+        Settings.controllerBudget = 1;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.controllerBudget = controllerBudget;
+    }
+
+    @Test
+    public void stepsAreHandedOutInTurns() {
+        // Seven steps worth of budget go around twice, then to the first two
+        // controllers, counting from the offset.
+        final int[] granted = TickHandlerControllers.grantSteps(new int[]{10, 10, 10}, new long[]{100, 100, 100}, 700, 1);
+        assertArrayEquals(new int[]{2, 3, 2}, granted);
+    }
+
+    @Test
+    public void stepsAreHandedOutUpToScheduledSteps() {
+        // Controllers done with their steps leave their turns to the others.
+        final int[] granted = TickHandlerControllers.grantSteps(new int[]{1, 0, 5}, new long[]{100, 100, 100}, 1000, 0);
+        assertArrayEquals(new int[]{1, 0, 5}, granted);
+
+        // Controllers that never ran yet count as taking no time, but use
+        // up some budget still, so this ends.
+        final int[] untimed = TickHandlerControllers.grantSteps(new int[]{Integer.MAX_VALUE, 2}, new long[]{0, 0}, 10, 0);
+        assertArrayEquals(new int[]{8, 2}, untimed);
+    }
+
+    @Test
+    public void offsetRotatesFirstController() {
+        final int[] scheduledSteps = {10, 10, 10, 10};
+        final long[] stepTimes = {100, 100, 100, 100};
+        for (int offset = -8; offset < 8; offset++) {
+            final int[] granted = TickHandlerControllers.grantSteps(scheduledSteps, stepTimes, 100, offset);
+            final int[] expected = new int[scheduledSteps.length];
+            expected[Math.floorMod(offset, scheduledSteps.length)] = 1;
+            assertArrayEquals(String.valueOf(offset), expected, granted);
+        }
+    }
+
+    @Test
+    public void slowControllersAreNotStarved() {
+        // Each step takes longer than the whole budget, so only one step is
+        // handed out per tick, to a different controller each tick.
+        final int[] scheduledSteps = {100, 100, 100};
+        final long[] stepTimes = {5000, 2000, 3000};
+        for (int tick = 0; tick < 2 * scheduledSteps.length; tick++) {
+            final int[] granted = TickHandlerControllers.grantSteps(scheduledSteps, stepTimes, 1000, tick);
+            final int[] expected = new int[scheduledSteps.length];
+            expected[tick % scheduledSteps.length] = 1;
+            assertArrayEquals(String.valueOf(tick), expected, granted);
+        }
+    }
+
+    @Test
+    public void slowControllerDoesNotStarveOthers() {
+        // Only the first controller's steps take longer than the budget. It
+        // uses up the budget on its turn, but the others get their turns
+        // before it on the following ticks.
+        final int[] scheduledSteps = {100, 100, 100};
+        final long[] stepTimes = {10000, 10, 10};
+        final int[][] expected = {{1, 0, 0}, {1, 1, 1}, {1, 0, 1}};
+        final int[] total = new int[scheduledSteps.length];
+        for (int tick = 0; tick < expected.length; tick++) {
+            final int[] granted = TickHandlerControllers.grantSteps(scheduledSteps, stepTimes, 1000, tick);
+            assertArrayEquals(String.valueOf(tick), expected[tick], granted);
+            for (int index = 0; index < total.length; index++) {
+                total[index] += granted[index];
+            }
+        }
+        for (final int steps : total) {
+            assertTrue(Arrays.toString(total), steps > 0);
+        }
+    }
+
+    @Test
+    public void noBudgetGrantsAllScheduledSteps() {
+        Settings.controllerBudget = 0;
+        final int[] scheduledSteps = {3, 0, 7};
+        final int[] granted = TickHandlerControllers.grantSteps(scheduledSteps, new long[]{100000, 100000, 100000}, 0, 0);
+        assertArrayEquals(scheduledSteps, granted);
+    }
+}
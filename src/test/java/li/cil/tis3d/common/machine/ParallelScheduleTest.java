@@ -0,0 +1,278 @@
+package li.cil.tis3d.common.machine;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.api.prefab.AbstractModule;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.ModuleExecution;
+import li.cil.tis3d.common.module.ModuleRandom;
+import li.cil.tis3d.common.module.ModuleStack;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.tile.TestWorld;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import li.cil.tis3d.common.tile.TileEntityController;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.BlockPos;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs random machines once with their modules stepped one after the other
+ * and once stepped via a {@link ParallelSchedule}, and checks the state of
+ * all casings is exactly the same after each step.
+ * <p>
+ * Machines contain {@link ModuleRandom}s, which are not {@link ConfinedModule}s
+ * and use the world's random generator. These must always be stepped on the
+ * calling thread, consuming random values in the same order.
+ */
+public class ParallelScheduleTest {
+    private static final int SEED_COUNT = 100;
+    private static final int STEP_COUNT = 200;
+    private static final int BATCH_COUNT = 4;
+
+    private static final String[] OPERATIONS = {"MOV", "ADD", "SUB", "SWP", "SAV", "NEG", "JRO", "JEZ", "JNZ", "JMP", "NOP"};
+    private static final String[] SOURCES = {"LEFT", "RIGHT", "UP", "DOWN", "ANY", "LAST", "ACC", "NIL", "1", "-1", "7"};
+    private static final String[] DESTINATIONS = {"LEFT", "RIGHT", "UP", "DOWN", "ANY", "LAST", "ACC", "NIL"};
+
+    private boolean linkCasingPipes;
+    private int maxColumnsPerLine;
+    private int maxCasingsPerController;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+    }
+
+    @Before
+    public void setUp() {
+        linkCasingPipes = Settings.linkCasingPipes;
+        maxColumnsPerLine = Settings.maxColumnsPerLine;
+        maxCasingsPerController = Settings.maxCasingsPerController;
+
+        Settings.maxColumnsPerLine = 40;
+        Settings.maxCasingsPerController = 64;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.linkCasingPipes = linkCasingPipes;
+        Settings.maxColumnsPerLine = maxColumnsPerLine;
+        Settings.maxCasingsPerController = maxCasingsPerController;
+    }
+
+    @Test
+    public void parallelMatchesSerialWithForwarders() {
+        Settings.linkCasingPipes = false;
+        parallelMatchesSerial();
+    }
+
+    @Test
+    public void parallelMatchesSerialWithLinkedPipes() {
+        Settings.linkCasingPipes = true;
+        parallelMatchesSerial();
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void parallelMatchesSerial() {
+        final Thread thread = Thread.currentThread();
+        final AtomicInteger workerSteps = new AtomicInteger();
+        final AtomicInteger workerRandoms = new AtomicInteger();
+        int parallelCount = 0;
+        for (int seed = 0; seed < SEED_COUNT; seed++) {
+            final List<NBTTagCompound> serial = run(seed, false, thread, workerSteps, workerRandoms);
+            final List<NBTTagCompound> parallel = run(seed, true, thread, workerSteps, workerRandoms);
+            if (parallel == null) {
+                continue;
+            }
+            parallelCount++;
+
+            assertEquals("seed " + seed, serial.size(), parallel.size());
+            for (int index = 0; index < serial.size(); index++) {
+                assertEquals("seed " + seed + ", state " + index, serial.get(index), parallel.get(index));
+            }
+        }
+
+        assertTrue("no machine could be split up", parallelCount > 0);
+        assertTrue("no module was stepped on a worker thread", workerSteps.get() > 0);
+        assertEquals("world random generator used on a worker thread", 0, workerRandoms.get());
+    }
+
+    /**
+     * Build a random machine and step it, collecting the state of all of its
+     * casings after each step, like its controller would.
+     *
+     * @return the states, or <tt>null</tt> if stepping in parallel was
+     * requested but the modules could not be split up.
+     */
+    private static List<NBTTagCompound> run(final int seed, final boolean isParallel, final Thread thread, final AtomicInteger workerSteps, final AtomicInteger workerRandoms) {
+        final Random random = new Random(seed);
+        final TestWorld world = new TestWorld();
+        world.rand = new Random(seed) {
+            @Override
+            protected int next(final int bits) {
+                if (Thread.currentThread() != thread) {
+                    workerRandoms.incrementAndGet();
+                }
+                return super.next(bits);
+            }
+        };
+
+        // Casings are placed in the order the controller sorts them in.
+        final TileEntityController controller = world.place(new TileEntityController(), new BlockPos(0, 0, 0));
+        final List<TileEntityCasing> casings = new ArrayList<>();
+        final int sizeX = 2 + random.nextInt(4), sizeY = 1 + random.nextInt(3), sizeZ = 1 + random.nextInt(4);
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 1; x <= sizeX; x++) {
+                    casings.add(world.place(new TileEntityCasing(), new BlockPos(x, y, z)));
+                }
+            }
+        }
+
+        // Only install modules on faces not covered by other blocks. Casings
+        // relaying pipes connect most of their modules, so keep those machines
+        // sparse enough for some of them to be split up.
+        final double emptyChance = Settings.linkCasingPipes ? 0.2 + random.nextDouble() * 0.5 : 0.6 + random.nextDouble() * 0.35;
+        for (final TileEntityCasing tileEntity : casings) {
+            final CasingImpl casing = (CasingImpl) tileEntity.getCasing();
+            for (final Face face : Face.VALUES) {
+                if (world.getTileEntity(tileEntity.getPos().offset(Face.toEnumFacing(face))) != null || random.nextDouble() < emptyChance) {
+                    continue;
+                }
+                casing.setModule(face, createModule(random, casing, face, thread, workerSteps));
+            }
+        }
+
+        // Let the controller find its casings, then take over stepping them.
+        world.setPower(0);
+        controller.update();
+        assertEquals(TileEntityController.ControllerState.READY, controller.getState());
+        if (Settings.linkCasingPipes) {
+            casings.forEach(TileEntityCasing::unlinkPipes);
+            casings.forEach(TileEntityCasing::linkPipes);
+        }
+        casings.forEach(TileEntityCasing::onEnabled);
+
+        // Collect modules after the scan, which installed forwarders between
+        // casings if they are not linked.
+        final List<Module> schedule = new ArrayList<>();
+        for (final TileEntityCasing casing : casings) {
+            for (final Face face : Face.VALUES) {
+                final Module module = casing.getModule(face);
+                if (module != null) {
+                    schedule.add(module);
+                }
+            }
+        }
+
+        final ParallelSchedule parallelSchedule = isParallel ? ParallelSchedule.build(schedule.toArray(new Module[schedule.size()]), BATCH_COUNT) : null;
+        if (isParallel && parallelSchedule == null) {
+            return null;
+        }
+
+        final List<NBTTagCompound> states = new ArrayList<>();
+        for (int step = 0; step < STEP_COUNT; step++) {
+            if (parallelSchedule != null) {
+                parallelSchedule.step();
+            } else {
+                schedule.forEach(Module::step);
+            }
+            casings.forEach(TileEntityCasing::stepPipes);
+
+            for (final TileEntityCasing tileEntity : casings) {
+                final NBTTagCompound nbt = new NBTTagCompound();
+                ((CasingImpl) tileEntity.getCasing()).writeToNBT(nbt);
+                states.add(nbt);
+            }
+        }
+
+        final NBTTagCompound randomState = new NBTTagCompound();
+        randomState.setLong("next", world.rand.nextLong());
+        states.add(randomState);
+        return states;
+    }
+
+    private static Module createModule(final Random random, final Casing casing, final Face face, final Thread thread, final AtomicInteger workerSteps) {
+        final int kind = random.nextInt(10);
+        if (kind < 6) {
+            final ModuleExecution module = new ModuleExecution(casing, face);
+            try {
+                Compiler.compile(generateProgram(random), module.getState());
+            } catch (final ParseException e) {
+                throw new AssertionError(e);
+            }
+            return module;
+        } else if (kind < 8) {
+            return new ModuleStack(casing, face);
+        } else if (kind < 9) {
+            return new ModuleRandom(casing, face);
+        } else {
+            return new ThreadRecordingModule(casing, face, thread, workerSteps);
+        }
+    }
+
+    private static List<String> generateProgram(final Random random) {
+        final int length = 1 + random.nextInt(8);
+        final List<String> code = new ArrayList<>(length);
+        for (int line = 0; line < length; line++) {
+            final String operation = OPERATIONS[random.nextInt(OPERATIONS.length)];
+            final String label = "L" + line + ": ";
+            switch (operation) {
+                case "MOV":
+                    code.add(label + operation + " " + SOURCES[random.nextInt(SOURCES.length)] + " " + DESTINATIONS[random.nextInt(DESTINATIONS.length)]);
+                    break;
+                case "ADD":
+                case "SUB":
+                    code.add(label + operation + " " + SOURCES[random.nextInt(SOURCES.length)]);
+                    break;
+                case "JRO":
+                    code.add(label + operation + " " + (random.nextInt(7) - 3));
+                    break;
+                case "JEZ":
+                case "JNZ":
+                case "JMP":
+                    code.add(label + operation + " L" + random.nextInt(length));
+                    break;
+                default:
+                    code.add(label + operation);
+                    break;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * A confined module doing nothing but counting how often it was stepped
+     * on a thread other than the one stepping the controller.
+     */
+    private static final class ThreadRecordingModule extends AbstractModule implements ConfinedModule {
+        private final Thread thread;
+        private final AtomicInteger workerSteps;
+
+        ThreadRecordingModule(final Casing casing, final Face face, final Thread thread, final AtomicInteger workerSteps) {
+            super(casing, face);
+            this.thread = thread;
+            this.workerSteps = workerSteps;
+        }
+
+        @Override
+        public void step() {
+            if (Thread.currentThread() != thread) {
+                workerSteps.incrementAndGet();
+            }
+        }
+    }
+}
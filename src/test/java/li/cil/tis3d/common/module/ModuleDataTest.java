@@ -0,0 +1,186 @@
+package li.cil.tis3d.common.module;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.module.Module;
+import li.cil.tis3d.api.prefab.AbstractModule;
+import li.cil.tis3d.common.network.message.MessageModuleByteData;
+import li.cil.tis3d.common.tile.TestWorld;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.BlockPos;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks the binary data stack and redstone modules send to clients, sent
+ * over the network and passed to a module on another casing, gives that
+ * module the same state, and that malformed data, as clients may send it,
+ * is ignored.
+ */
+public class ModuleDataTest {
+    private TestWorld world;
+    private final List<ByteBuf> sent = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+    }
+
+    @Before
+    public void setUp() {
+        world = new TestWorld();
+
+        // Encode right away, the casing releases messages once sent.
+        TestWorld.setMessageListener((IMessage message) -> {
+            if (message instanceof MessageModuleByteData) {
+                final ByteBuf buf = Unpooled.buffer();
+                message.toBytes(buf);
+                sent.add(buf);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        TestWorld.setMessageListener(null);
+    }
+
+    @Test
+    public void stackDataRoundTrip() {
+        final TileEntityCasing casing = createCasing(new BlockPos(0, 0, 0));
+        final ModuleStack module = new ModuleStack(casing, Face.Y_NEG);
+        casing.setModule(Face.Y_NEG, module);
+        final TileEntityCasing replicaCasing = createCasing(new BlockPos(0, 1, 0));
+        final ModuleStack replica = new ModuleStack(replicaCasing, Face.Y_NEG);
+
+        // Fill the stack, checking each push, including negative values.
+        for (int i = 0; i < ModuleStack.STACK_SIZE; i++) {
+            write(casing, module, i * 4099 - 30000);
+            assertSameState(module, replica);
+        }
+
+        module.onDisabled();
+        assertSameState(module, replica);
+    }
+
+    @Test
+    public void redstoneDataRoundTrip() {
+        final TileEntityCasing casing = createCasing(new BlockPos(0, 0, 0));
+        final ModuleRedstone module = new ModuleRedstone(casing, Face.Y_NEG);
+        casing.setModule(Face.Y_NEG, module);
+        final TileEntityCasing replicaCasing = createCasing(new BlockPos(0, 1, 0));
+        final ModuleRedstone replica = new ModuleRedstone(replicaCasing, Face.Y_NEG);
+
+        world.setPower(9);
+        world.getWorldInfo().setWorldTotalTime(1);
+        module.step();
+        assertSameState(module, replica);
+
+        write(casing, module, 5);
+        assertSameState(module, replica);
+        assertEquals(5, replica.getRedstoneOutput());
+
+        module.onDisabled();
+        assertSameState(module, replica);
+    }
+
+    @Test
+    public void malformedStackDataIsIgnored() {
+        final ModuleStack module = new ModuleStack(createCasing(new BlockPos(0, 0, 0)), Face.Y_NEG);
+        final NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setIntArray("stack", new int[]{1, 2, 3});
+        nbt.setInteger("top", 2);
+        module.readFromNBT(nbt);
+        final NBTTagCompound expected = writeToNBT(module);
+
+        // Empty, and fewer values than the top index needs.
+        module.onData(Unpooled.buffer());
+        module.onData(Unpooled.buffer().writeByte(3).writeShort(1).writeShort(2));
+        module.onData(Unpooled.buffer().writeByte(Byte.MAX_VALUE).writeShort(1));
+        assertEquals(expected, writeToNBT(module));
+
+        // Top indices out of range are clamped.
+        module.onData(Unpooled.buffer().writeByte(Byte.MIN_VALUE));
+        assertEquals(-1, writeToNBT(module).getInteger("top"));
+    }
+
+    @Test
+    public void malformedRedstoneDataIsIgnored() {
+        final ModuleRedstone module = new ModuleRedstone(createCasing(new BlockPos(0, 0, 0)), Face.Y_NEG);
+        module.onData(Unpooled.buffer().writeByte(4).writeByte(6));
+        final NBTTagCompound expected = writeToNBT(module);
+
+        module.onData(Unpooled.buffer());
+        module.onData(Unpooled.buffer().writeByte(1));
+        assertEquals(expected, writeToNBT(module));
+
+        // Values out of the redstone range are clamped.
+        module.onData(Unpooled.buffer().writeByte(Byte.MAX_VALUE).writeByte(-1));
+        assertEquals(15, module.getRedstoneOutput());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private TileEntityCasing createCasing(final BlockPos pos) {
+        final TileEntityCasing casing = world.place(new TileEntityCasing(), pos);
+        // Writers for the modules under test, notified when values were read.
+        for (final Face face : Face.VALUES) {
+            if (face != Face.Y_NEG) {
+                casing.setModule(face, new AbstractModule(casing.getCasing(), face) {
+                });
+            }
+        }
+        return casing;
+    }
+
+    /**
+     * Write a value to the module and step until it was read.
+     */
+    private static void write(final TileEntityCasing casing, final Module module, final int value) {
+        final Pipe pipe = casing.getReceivingPipe(module.getFace(), Port.UP);
+        pipe.beginWrite(value);
+        for (int i = 0; i < 4 && pipe.isWriting(); i++) {
+            module.step();
+            casing.stepPipes();
+        }
+        assertFalse(pipe.isWriting());
+    }
+
+    /**
+     * Decode the data sent since the last call and pass it to the replica,
+     * as the client would, then check it has the state of the module.
+     */
+    private void assertSameState(final Module module, final Module replica) {
+        assertFalse(sent.isEmpty());
+        for (final ByteBuf buf : sent) {
+            final MessageModuleByteData message = new MessageModuleByteData();
+            message.fromBytes(buf);
+            assertEquals(module.getFace(), message.getFace());
+            replica.onData(message.getData());
+            assertFalse(message.getData().isReadable());
+            message.release();
+        }
+        sent.clear();
+
+        assertEquals(writeToNBT(module), writeToNBT(replica));
+    }
+
+    private static NBTTagCompound writeToNBT(final Module module) {
+        final NBTTagCompound nbt = new NBTTagCompound();
+        module.writeToNBT(nbt);
+        return nbt;
+    }
+}
@@ -0,0 +1,86 @@
+package li.cil.tis3d.common.module;
+
+import li.cil.tis3d.api.API;
+import li.cil.tis3d.api.ModuleAPI;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.common.api.ModuleAPIImpl;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.network.message.MessageExecutionState;
+import li.cil.tis3d.common.provider.ModuleProviderExecution;
+import li.cil.tis3d.common.tile.TestWorld;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.BlockPos;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks execution modules installed into a casing the way players install
+ * them, i.e. via the casing's inventory, send their state to clients.
+ */
+public class ModuleExecutionTest {
+    /**
+     * The ordinal of <tt>ModuleExecution.State.IDLE</tt>.
+     */
+    private static final int STATE_IDLE = 0;
+
+    /**
+     * The ordinal of <tt>ModuleExecution.State.WAIT</tt>.
+     */
+    private static final int STATE_WAIT = 3;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+        if (API.moduleAPI == null) {
+            API.moduleAPI = new ModuleAPIImpl();
+        }
+        ModuleAPI.addProvider(new ModuleProviderExecution());
+    }
+
+    @After
+    public void tearDown() {
+        TestWorld.setMessageListener(null);
+    }
+
+    @Test
+    public void installedModuleSendsState() throws ParseException {
+        final TestWorld world = new TestWorld();
+        final TileEntityCasing casing = world.place(new TileEntityCasing(), new BlockPos(1, 2, 3));
+
+        // Module items are not registered in tests, so the provider looks for
+        // stacks without an item.
+        casing.setInventorySlotContents(Face.Y_NEG.ordinal(), new ItemStack((Item) null));
+        assertTrue(casing.getModule(Face.Y_NEG) instanceof ModuleExecution);
+        final ModuleExecution module = (ModuleExecution) casing.getModule(Face.Y_NEG);
+        Compiler.compile(Collections.singletonList("MOV LEFT ACC"), module.getState());
+
+        final List<MessageExecutionState> messages = new ArrayList<>();
+        TestWorld.setMessageListener((IMessage message) -> {
+            if (message instanceof MessageExecutionState) {
+                messages.add((MessageExecutionState) message);
+            }
+        });
+
+        // Nothing to read, so the module starts waiting.
+        module.step();
+        module.onDisabled();
+
+        assertEquals(2, messages.size());
+        assertEquals(casing.getPos(), messages.get(0).getPosition());
+        assertEquals(Face.Y_NEG, messages.get(0).getFace());
+        assertEquals(STATE_WAIT, messages.get(0).getState());
+        assertEquals(STATE_IDLE, messages.get(1).getState());
+    }
+}
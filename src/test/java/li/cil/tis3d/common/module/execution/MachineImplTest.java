@@ -0,0 +1,176 @@
+package li.cil.tis3d.common.module.execution;
+
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.ModuleExecution;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.target.Target;
+import li.cil.tis3d.common.module.execution.target.TargetInterface;
+import li.cil.tis3d.common.tile.TestWorld;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.BlockPos;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the table of rotated target interfaces of execution modules matches
+ * {@link MachineImpl#getRotatedTarget(Target)} for all faces and facings,
+ * and compares the time per step with resolving targets on each access.
+ */
+public class MachineImplTest {
+    private static final Target[] PORT_TARGETS = {Target.LEFT, Target.RIGHT, Target.UP, Target.DOWN};
+
+    private static final String[] REGISTER_PROGRAM = {"MOV 1, ACC", "MOV ACC, NIL", "MOV NIL, ACC", "MOV ACC, ACC"};
+    private static final String[] PORT_PROGRAM = {"MOV 1, LEFT"};
+    private static final int STEP_COUNT = 200000;
+    private static final int WARMUP_COUNT = 5;
+    private static final int REPEAT_COUNT = 10;
+
+    private boolean useOpcodeInterpreter;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+    }
+
+    @Before
+    public void setUp() {
+        useOpcodeInterpreter = Settings.useOpcodeInterpreter;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.useOpcodeInterpreter = useOpcodeInterpreter;
+    }
+
+    @Test
+    public void rotatedInterfacesMatchRotatedTargets() throws ParseException {
+        for (final boolean isInterpreted : new boolean[]{false, true}) {
+            Settings.useOpcodeInterpreter = isInterpreted;
+            for (final Face face : Face.VALUES) {
+                for (final Port facing : Port.VALUES) {
+                    for (final Target target : PORT_TARGETS) {
+                        // Rotate twice, so a stale table would show.
+                        final Casing casing = createCasing();
+                        final ModuleExecution module = new ModuleExecution(casing, face);
+                        module.setFacing(facing.getOpposite());
+                        module.setFacing(facing);
+                        assertWritesTo(casing, module, target);
+
+                        // Rotation loaded from NBT.
+                        final NBTTagCompound nbt = new NBTTagCompound();
+                        module.writeToNBT(nbt);
+                        final Casing loadedCasing = createCasing();
+                        final ModuleExecution loadedModule = new ModuleExecution(loadedCasing, face);
+                        loadedModule.readFromNBT(nbt);
+                        assertWritesTo(loadedCasing, loadedModule, target);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void stepMoveHeavyPrograms() throws ParseException {
+        benchmark("registers", REGISTER_PROGRAM);
+        benchmark("ports", PORT_PROGRAM);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static Casing createCasing() {
+        final TestWorld world = new TestWorld();
+        return world.place(new TileEntityCasing(), new BlockPos(0, 0, 0)).getCasing();
+    }
+
+    /**
+     * Run a program writing to the specified target and check the write ends
+     * up on the pipe of the port the target is rotated to, and no other.
+     */
+    private static void assertWritesTo(final Casing casing, final ModuleExecution module, final Target target) throws ParseException {
+        casing.setModule(module.getFace(), module);
+        Compiler.compile(Collections.singletonList("MOV 1, " + target.name()), module.getState());
+        module.step();
+
+        final Port expected = Target.toPort(new MachineImpl(module, module.getFace()).getRotatedTarget(target));
+        for (final Port port : Port.VALUES) {
+            final String message = module.getFace() + ", " + module.getFacing() + ", " + target + ", " + port;
+            assertEquals(message, port == expected, casing.getSendingPipe(module.getFace(), port).isWriting());
+        }
+    }
+
+    /**
+     * Step the instructions of a program on a machine using the rotated
+     * interface table, and on one resolving the rotation on each access, as
+     * the machine did before, reporting the average time per step of each.
+     */
+    private static void benchmark(final String name, final String[] code) throws ParseException {
+        final Casing casing = createCasing();
+        final ModuleExecution module = new ModuleExecution(casing, Face.Y_POS);
+        casing.setModule(Face.Y_POS, module);
+
+        // Nothing is rotated at the default facing, so this gets the plain
+        // interface for each target.
+        final MachineImpl machine = new MachineImpl(module, Face.Y_POS);
+        final TargetInterface[] interfaces = new TargetInterface[Target.VALUES.length];
+        for (final Target target : Target.VALUES) {
+            interfaces[target.ordinal()] = machine.getInterface(target);
+        }
+        module.setFacing(Port.LEFT);
+        machine.updateRotation();
+
+        final Machine resolvingMachine = new Machine() {
+            @Override
+            public MachineState getState() {
+                return machine.getState();
+            }
+
+            @Override
+            public TargetInterface getInterface(final Target target) {
+                return interfaces[machine.getRotatedTarget(target).ordinal()];
+            }
+        };
+
+        Compiler.compile(Arrays.asList(code), machine.getState());
+
+        long tableTime = 0, resolvingTime = 0;
+        for (int i = 0; i < WARMUP_COUNT + REPEAT_COUNT; i++) {
+            final long tableStart = System.nanoTime();
+            run(machine);
+            final long tableEnd = System.nanoTime();
+
+            final long resolvingStart = System.nanoTime();
+            run(resolvingMachine);
+            final long resolvingEnd = System.nanoTime();
+
+            if (i >= WARMUP_COUNT) {
+                tableTime += tableEnd - tableStart;
+                resolvingTime += resolvingEnd - resolvingStart;
+            }
+        }
+
+        final double count = (double) REPEAT_COUNT * STEP_COUNT;
+        System.out.printf("%s table=%.2fns resolving=%.2fns%n", name, tableTime / count, resolvingTime / count);
+    }
+
+    private static void run(final Machine machine) {
+        final MachineState state = machine.getState();
+        for (int step = 0; step < STEP_COUNT; step++) {
+            final Instruction instruction = state.program.instructions.get(state.pc);
+            instruction.step(machine);
+            state.validate();
+        }
+    }
+}
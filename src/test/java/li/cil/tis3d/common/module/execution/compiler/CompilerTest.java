@@ -0,0 +1,176 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.MachineState;
+import net.minecraft.nbt.NBTTagCompound;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks loading code that was compiled before, as when loading execution
+ * modules from NBT, gives the same state as compiling it, and compares the
+ * time it takes to load many modules with and without cached programs.
+ */
+public class CompilerTest {
+    private static final String[] CODE = {"L: MOV LEFT, ACC # IN", "ADD 1", "JGZ L", "MOV ACC, RIGHT"};
+
+    private static final int MODULE_COUNT = 2000;
+    private static final int PROGRAM_COUNT = 50;
+    private static final int WARMUP_COUNT = 3;
+    private static final int REPEAT_COUNT = 10;
+    private static final String[] INSTRUCTIONS = {
+            "MOV LEFT, ACC", "MOV ACC, RIGHT", "ADD 1", "SUB UP", "SAV", "SWP", "NEG", "JRO -1", "MOV ANY, DOWN", "JEZ L0"
+    };
+
+    private int maxLinesPerProgram;
+    private int maxColumnsPerLine;
+
+    @Before
+    public void setUp() {
+        maxLinesPerProgram = Settings.maxLinesPerProgram;
+        maxColumnsPerLine = Settings.maxColumnsPerLine;
+
+        Settings.maxColumnsPerLine = 40;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.maxLinesPerProgram = maxLinesPerProgram;
+        Settings.maxColumnsPerLine = maxColumnsPerLine;
+    }
+
+    @Test
+    public void cachedProgramMatchesCompiledProgram() throws ParseException {
+        final MachineState compiled = new MachineState();
+        Compiler.compile(Arrays.asList(CODE), compiled);
+
+        final MachineState loaded = new MachineState();
+        loaded.pc = 2;
+        Compiler.compile(String.join("\n", CODE), loaded);
+
+        assertArrayEquals(compiled.code, loaded.code);
+        assertSame(compiled.program, loaded.program);
+        assertEquals(0, loaded.pc);
+    }
+
+    @Test
+    public void cachedProgramChecksLineCount() throws ParseException {
+        final MachineState compiled = new MachineState();
+        Compiler.compile(Arrays.asList(CODE), compiled);
+
+        Settings.maxLinesPerProgram = CODE.length - 1;
+        final MachineState loaded = new MachineState();
+        try {
+            Compiler.compile(String.join("\n", compiled.code), loaded);
+            fail("too many lines");
+        } catch (final ParseException e) {
+            assertEquals(Constants.MESSAGE_TOO_MANY_LINES, e.getMessage());
+            assertEquals(Settings.maxLinesPerProgram, e.getLineNumber());
+        }
+        assertNull(loaded.code);
+    }
+
+    @Test
+    public void cachedProgramChecksLineLength() throws ParseException {
+        final MachineState compiled = new MachineState();
+        Compiler.compile(Arrays.asList(CODE), compiled);
+
+        Settings.maxColumnsPerLine = CODE[0].length() - 1;
+        final MachineState loaded = new MachineState();
+        try {
+            Compiler.compile(String.join("\n", compiled.code), loaded);
+            fail("line too long");
+        } catch (final ParseException e) {
+            assertEquals(Constants.MESSAGE_LINE_TOO_LONG, e.getMessage());
+            assertEquals(0, e.getLineNumber());
+            assertEquals(Settings.maxColumnsPerLine, e.getStart());
+        }
+        assertNull(loaded.code);
+    }
+
+    @Test
+    public void linesWithLineBreaksAreNotShared() throws ParseException {
+        final MachineState split = new MachineState();
+        Compiler.compile(Arrays.asList("", "NOP"), split);
+
+        final MachineState joined = new MachineState();
+        Compiler.compile(Collections.singletonList("\nNOP"), joined);
+
+        assertEquals(Integer.valueOf(1), split.program.lineNumbers.get(0));
+        assertEquals(Integer.valueOf(0), joined.program.lineNumbers.get(0));
+    }
+
+    @Test
+    public void loadModules() {
+        long compileTime = 0, cachedTime = 0;
+        for (int i = 0; i < WARMUP_COUNT + REPEAT_COUNT; i++) {
+            // New programs each round, so the first load has to compile them,
+            // like the first load after a server start. Machines with the
+            // same program share it, like copied code would.
+            final List<NBTTagCompound> modules = new ArrayList<>(MODULE_COUNT);
+            for (int index = 0; index < MODULE_COUNT; index++) {
+                final NBTTagCompound nbt = new NBTTagCompound();
+                nbt.setString(MachineState.TAG_CODE, String.join("\n", generateProgram(new Random(i * PROGRAM_COUNT + index % PROGRAM_COUNT))));
+                modules.add(nbt);
+            }
+
+            // Keep states alive, which keeps their programs cached.
+            final List<MachineState> states = new ArrayList<>(MODULE_COUNT);
+
+            final long compileStart = System.nanoTime();
+            for (int index = 0; index < PROGRAM_COUNT; index++) {
+                final MachineState state = new MachineState();
+                state.readFromNBT(modules.get(index));
+                states.add(state);
+            }
+            final long compileEnd = System.nanoTime();
+
+            final long cachedStart = System.nanoTime();
+            for (final NBTTagCompound nbt : modules) {
+                final MachineState state = new MachineState();
+                state.readFromNBT(nbt);
+                states.add(state);
+            }
+            final long cachedEnd = System.nanoTime();
+
+            for (int index = 0; index < MODULE_COUNT; index++) {
+                assertSame(states.get(index % PROGRAM_COUNT).program, states.get(PROGRAM_COUNT + index).program);
+            }
+
+            if (i >= WARMUP_COUNT) {
+                compileTime += compileEnd - compileStart;
+                cachedTime += cachedEnd - cachedStart;
+            }
+        }
+
+        // Without cached programs, loading each module compiled its code.
+        System.out.printf("modules=%d compile=%.2fms cached=%.2fms%n", MODULE_COUNT,
+                compileTime / 1e6 / REPEAT_COUNT / PROGRAM_COUNT * MODULE_COUNT,
+                cachedTime / 1e6 / REPEAT_COUNT);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static List<String> generateProgram(final Random random) {
+        final List<String> code = new ArrayList<>(Settings.maxLinesPerProgram);
+        code.add("L0: NOP");
+        for (int line = 1; line < Settings.maxLinesPerProgram; line++) {
+            code.add(INSTRUCTIONS[random.nextInt(INSTRUCTIONS.length)]);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,228 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import li.cil.tis3d.common.Constants;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.Program;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.instruction.InstructionAdd;
+import li.cil.tis3d.common.module.execution.instruction.InstructionAddImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseAnd;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseAndImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseNot;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseOr;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseOrImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseShiftLeft;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseShiftLeftImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseShiftRight;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseShiftRightImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseXor;
+import li.cil.tis3d.common.module.execution.instruction.InstructionBitwiseXorImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJump;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJumpEqualZero;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJumpGreaterThanZero;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJumpLessThanZero;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJumpNotZero;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJumpRelative;
+import li.cil.tis3d.common.module.execution.instruction.InstructionJumpRelativeImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionMove;
+import li.cil.tis3d.common.module.execution.instruction.InstructionMoveImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionNegate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionSave;
+import li.cil.tis3d.common.module.execution.instruction.InstructionSubtract;
+import li.cil.tis3d.common.module.execution.instruction.InstructionSubtractImmediate;
+import li.cil.tis3d.common.module.execution.instruction.InstructionSwap;
+import li.cil.tis3d.common.module.execution.target.Target;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The regex based line parsing the {@link Compiler} used before it switched
+ * to the {@link Tokenizer}, kept as a reference for the generated programs
+ * and errors. Does not cache programs.
+ */
+final class RegexCompiler {
+    private static final Pattern PATTERN_COMMENT = Pattern.compile("#.*$");
+    private static final Pattern PATTERN_LABEL = Pattern.compile("(?<label>[^:]+)\\s*:\\s*(?<rest>.*)");
+    private static final Pattern PATTERN_INSTRUCTION = Pattern.compile("^(?<name>\\S+)\\s*(?<arg1>[^,\\s]+)?\\s*,?\\s*(?<arg2>[^,\\s]+)?\\s*(?<excess>.+)?$");
+    private static final Instruction INSTRUCTION_NOP = new InstructionAdd(Target.NIL);
+
+    private static final Map<String, Function<Object, Instruction>> UNARY = ImmutableMap.<String, Function<Object, Instruction>>builder().
+            put("NOP", arg -> INSTRUCTION_NOP).
+            put("SAV", arg -> InstructionSave.INSTANCE).
+            put("SWP", arg -> InstructionSwap.INSTANCE).
+            put("NEG", arg -> InstructionNegate.INSTANCE).
+            put("NOT", arg -> InstructionBitwiseNot.INSTANCE).
+            build();
+    private static final Map<String, Function<String, Instruction>> LABEL = ImmutableMap.<String, Function<String, Instruction>>builder().
+            put("JMP", InstructionJump::new).
+            put("JEZ", InstructionJumpEqualZero::new).
+            put("JGZ", InstructionJumpGreaterThanZero::new).
+            put("JLZ", InstructionJumpLessThanZero::new).
+            put("JNZ", InstructionJumpNotZero::new).
+            build();
+    private static final Map<String, Function<Target, Instruction>> TARGET = ImmutableMap.<String, Function<Target, Instruction>>builder().
+            put("JRO", InstructionJumpRelative::new).
+            put("ADD", InstructionAdd::new).
+            put("SUB", InstructionSubtract::new).
+            put("AND", InstructionBitwiseAnd::new).
+            put("OR", InstructionBitwiseOr::new).
+            put("XOR", InstructionBitwiseXor::new).
+            put("SHL", InstructionBitwiseShiftLeft::new).
+            put("SHR", InstructionBitwiseShiftRight::new).
+            build();
+    private static final Map<String, Function<Integer, Instruction>> IMMEDIATE = ImmutableMap.<String, Function<Integer, Instruction>>builder().
+            put("JRO", InstructionJumpRelativeImmediate::new).
+            put("ADD", InstructionAddImmediate::new).
+            put("SUB", InstructionSubtractImmediate::new).
+            put("AND", InstructionBitwiseAndImmediate::new).
+            put("OR", InstructionBitwiseOrImmediate::new).
+            put("XOR", InstructionBitwiseXorImmediate::new).
+            put("SHL", InstructionBitwiseShiftLeftImmediate::new).
+            put("SHR", InstructionBitwiseShiftRightImmediate::new).
+            build();
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Parse the specified piece of assembly code into a new program.
+     *
+     * @param code the code to parse and compile.
+     * @return the compiled program.
+     * @throws ParseException if the specified code contains syntax errors.
+     */
+    static Program compile(final Iterable<String> code) throws ParseException {
+        final String[] lines = Iterables.toArray(code, String.class);
+        if (lines.length > Settings.maxLinesPerProgram) {
+            throw new ParseException(Constants.MESSAGE_TOO_MANY_LINES, Settings.maxLinesPerProgram, 0, 0);
+        }
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            lines[lineNumber] = lines[lineNumber].toUpperCase(Locale.ENGLISH);
+        }
+
+        final List<Instruction> instructions = new ArrayList<>(lines.length);
+        final Map<String, Integer> labels = new HashMap<>();
+        final Map<Integer, Integer> lineNumbers = new HashMap<>(lines.length);
+        final List<Validator> validators = new ArrayList<>();
+        for (int lineNumber = 0; lineNumber < lines.length; lineNumber++) {
+            if (lines[lineNumber].length() > Settings.maxColumnsPerLine) {
+                throw new ParseException(Constants.MESSAGE_LINE_TOO_LONG, lineNumber, Settings.maxColumnsPerLine, Settings.maxColumnsPerLine);
+            }
+
+            final String line = PATTERN_COMMENT.matcher(lines[lineNumber]).replaceFirst("").trim();
+            final Instruction instruction = parseInstruction(parseLabel(line, labels, instructions.size()), lineNumber, validators);
+            if (instruction != null) {
+                lineNumbers.put(instructions.size(), lineNumber);
+                instructions.add(instruction);
+            }
+        }
+
+        for (final Validator validator : validators) {
+            validator.accept(labels);
+        }
+
+        return new Program(instructions, labels, lineNumbers);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static String parseLabel(final String line, final Map<String, Integer> labels, final int address) {
+        final Matcher matcher = PATTERN_LABEL.matcher(line);
+        if (matcher.matches()) {
+            labels.put(matcher.group("label"), address);
+            return matcher.group("rest");
+        } else {
+            return line;
+        }
+    }
+
+    private static Instruction parseInstruction(final String line, final int lineNumber, final List<Validator> validators) throws ParseException {
+        if (Strings.isNullOrEmpty(line)) return null;
+
+        final Matcher matcher = PATTERN_INSTRUCTION.matcher(line);
+        if (!matcher.matches()) {
+            throw new ParseException(Constants.MESSAGE_UNEXPECTED_TOKEN, lineNumber, 0, 0);
+        }
+
+        final String name = matcher.group("name");
+        if (UNARY.containsKey(name)) {
+            checkExcess(lineNumber, matcher, "arg1");
+            return UNARY.get(name).apply(null);
+        } else if (LABEL.containsKey(name)) {
+            final String label = checkArg(lineNumber, matcher, "arg1", "name");
+            checkExcess(lineNumber, matcher, "arg2");
+            validators.add(labels -> {
+                if (!labels.containsKey(label)) {
+                    throw new ParseException(Constants.MESSAGE_NO_SUCH_LABEL, lineNumber, matcher.start("arg1"), matcher.end("arg1"));
+                }
+            });
+            return LABEL.get(name).apply(label);
+        } else if (TARGET.containsKey(name)) {
+            final Object src = checkTargetOrInt(lineNumber, checkArg(lineNumber, matcher, "arg1", "name"), matcher.start("arg1"), matcher.end("arg1"));
+            checkExcess(lineNumber, matcher, "arg2");
+            return src instanceof Target ? TARGET.get(name).apply((Target) src) : IMMEDIATE.get(name).apply((Integer) src);
+        } else if ("MOV".equals(name)) {
+            final Object src = checkTargetOrInt(lineNumber, checkArg(lineNumber, matcher, "arg1", "name"), matcher.start("arg1"), matcher.end("arg1"));
+            final Target dst = checkTarget(lineNumber, checkArg(lineNumber, matcher, "arg2", "arg1"), matcher.start("arg2"), matcher.end("arg2"));
+            checkExcess(lineNumber, matcher, "excess");
+            return src instanceof Target ? new InstructionMove((Target) src, dst) : new InstructionMoveImmediate((Integer) src, dst);
+        } else {
+            throw new ParseException(Constants.MESSAGE_UNKNOWN_INSTRUCTION, lineNumber, matcher.start("name"), matcher.end("name"));
+        }
+    }
+
+    private static void checkExcess(final int lineNumber, final Matcher matcher, final String name) throws ParseException {
+        final int start = matcher.start(name);
+        if (start >= 0) {
+            throw new ParseException(Constants.MESSAGE_EXCESS_TOKENS, lineNumber, start, matcher.end());
+        }
+    }
+
+    private static String checkArg(final int lineNumber, final Matcher matcher, final String name, final String previous) throws ParseException {
+        final String arg = matcher.group(name);
+        if (arg == null) {
+            throw new ParseException(Constants.MESSAGE_MISSING_PARAMETER, lineNumber, matcher.end(previous) + 1, matcher.end(previous) + 1);
+        }
+        return arg;
+    }
+
+    private static Target checkTarget(final int lineNumber, final String name, final int start, final int end) throws ParseException {
+        try {
+            final Target target = Enum.valueOf(Target.class, name);
+            if (!Target.VALID_TARGETS.contains(target)) {
+                throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
+            }
+            return target;
+        } catch (final IllegalArgumentException ex) {
+            throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
+        }
+    }
+
+    private static Object checkTargetOrInt(final int lineNumber, final String name, final int start, final int end) throws ParseException {
+        try {
+            final Target target = Enum.valueOf(Target.class, name);
+            if (!Target.VALID_TARGETS.contains(target)) {
+                throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
+            }
+            return target;
+        } catch (final IllegalArgumentException ex) {
+            try {
+                return Integer.decode(name);
+            } catch (final NumberFormatException ignored) {
+                throw new ParseException(Constants.MESSAGE_INVALID_TARGET, lineNumber, start, end);
+            }
+        }
+    }
+
+    private RegexCompiler() {
+    }
+}
@@ -0,0 +1,189 @@
+package li.cil.tis3d.common.module.execution.compiler;
+
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.Program;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compiles programs with the {@link Compiler}, which splits lines using the
+ * {@link Tokenizer}, and with the {@link RegexCompiler} it replaced, and
+ * checks both produce the same programs and the same errors, down to their
+ * line and columns.
+ * <p>
+ * Also compares the time both take to compile programs of the maximum size.
+ */
+public class TokenizerTest {
+    private static final int PROGRAM_COUNT = 20000;
+    private static final int BENCHMARK_PROGRAM_COUNT = 50;
+    private static final int WARMUP_COUNT = 5;
+    private static final int REPEAT_COUNT = 10;
+    private static final int MAX_LINES = 200;
+
+    private static final String[][] EDGE_CASES = {
+            // Labels.
+            {"L:"}, {"L: NOP"}, {"L :NOP"}, {"  L  :  NOP  "}, {"L:NOP"}, {"A:B:NOP"}, {":NOP"}, {"L::NOP"},
+            {"L: JMP L"}, {"JMP L", "L:"}, {"JMP M", "L:"}, {"L:", "L: NOP", "JMP L"}, {"L : # COMMENT"}, {"L:#:"},
+            // Comments.
+            {"#"}, {"# COMMENT"}, {"NOP # COMMENT"}, {"NOP#"}, {"MOV 1#ACC"}, {"MOV 1, # ACC"}, {"#L: NOP"}, {"MOV # 1 ACC"},
+            // Line terminators and other odd whitespace.
+            {"NOP\r"}, {"\rNOP"}, {"NOP\n"}, {"MOV 1\rACC"}, {"MOV 1\u0085ACC"}, {"NOP\u2028"}, {"\u2029NOP"},
+            {"NOP # \r"}, {"NOP # A\rB"}, {"L:\rNOP"}, {"L\r: NOP"}, {"MOV\u000B1 ACC"}, {"MOV\f1 ACC"}, {"MOV\t1\tACC"},
+            {"NOP\u0001"}, {"\u0001NOP"}, {"MOV 1 \u0085"}, {"ADD 1\r\n"},
+            // Separators.
+            {"MOV 1,ACC"}, {"MOV 1 , ACC"}, {"MOV 1,,ACC"}, {"MOV ,1 ACC"}, {"MOV 1 ACC,"}, {"MOV 1, ACC, NIL"}, {"ADD ,"}, {","},
+            // Errors.
+            {"FOO"}, {"MOV"}, {"MOV 1"}, {"MOV ACC 1"}, {"MOV 1 ACC NIL"}, {"ADD"}, {"ADD 1 2"}, {"ADD FOO"}, {"ADD BAK"},
+            {"NOP 1"}, {"JMP"}, {"JMP L L"}, {"JRO"}, {"MOV 99999999999 ACC"}, {"MOV 0X1F ACC"}, {"MOV 010 ACC"}, {"MOV -0 ACC"},
+            {"MOV +3 ACC"}, {"MOV #1 ACC"}, {"MOV 123456789012345678901234567890123456789012 ACC"},
+            // Case.
+            {"nop"}, {"l: jmp l"}, {"mov left, acc"},
+    };
+
+    private static final String[] ATOMS = {
+            "MOV", "ADD", "SUB", "JMP", "JEZ", "JRO", "NOP", "SAV", "SWP", "NEG", "NOT", "AND", "SHL", "FOO",
+            "L", "X", "ACC", "BAK", "NIL", "LEFT", "ANY", "LAST", "1", "-5", "0X1F", "010", "+3", "99999999999",
+            ",", ", ", ":", ": ", "#", " ", "  ", "\t", "\r", "\n", "\u0085", "\u2028", "\u000B", "\f", "\u0001", "A:", "L:"
+    };
+
+    private static final String[] BENCHMARK_INSTRUCTIONS = {
+            "MOV LEFT, ACC", "MOV ACC, RIGHT", "MOV 12 DOWN", "ADD UP", "SUB 0X10", "SAV", "SWP", "NEG", "NOP",
+            "JRO -1", "AND 0XFF", "SHL 2", "MOV ANY, LAST", "JEZ L%d", "JNZ L%d", "JMP L%d"
+    };
+
+    private int maxLinesPerProgram;
+    private int maxColumnsPerLine;
+
+    @Before
+    public void setUp() {
+        maxLinesPerProgram = Settings.maxLinesPerProgram;
+        maxColumnsPerLine = Settings.maxColumnsPerLine;
+
+        Settings.maxLinesPerProgram = MAX_LINES;
+        Settings.maxColumnsPerLine = 40;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.maxLinesPerProgram = maxLinesPerProgram;
+        Settings.maxColumnsPerLine = maxColumnsPerLine;
+    }
+
+    @Test
+    public void edgeCasesMatchRegexPath() {
+        for (final String[] code : EDGE_CASES) {
+            assertSameResult(Arrays.asList(code), null);
+        }
+    }
+
+    @Test
+    public void randomProgramsMatchRegexPath() {
+        final Random random = new Random(0);
+        final LineCache cache = new LineCache();
+        for (int index = 0; index < PROGRAM_COUNT; index++) {
+            final List<String> code = new ArrayList<>();
+            final int lineCount = 1 + random.nextInt(4);
+            for (int line = 0; line < lineCount; line++) {
+                final StringBuilder builder = new StringBuilder();
+                final int atomCount = random.nextInt(7);
+                for (int atom = 0; atom < atomCount; atom++) {
+                    builder.append(ATOMS[random.nextInt(ATOMS.length)]);
+                    if (random.nextInt(3) > 0) {
+                        builder.append(' ');
+                    }
+                }
+                code.add(builder.toString());
+            }
+            if (random.nextInt(10) == 0) {
+                code.add("L: NOP");
+            }
+
+            assertSameResult(code, null);
+            assertSameResult(code, cache);
+        }
+    }
+
+    @Test
+    public void compileMaxSizePrograms() throws ParseException {
+        long regexTime = 0, tokenizerTime = 0;
+        for (int i = 0; i < WARMUP_COUNT + REPEAT_COUNT; i++) {
+            // New programs each round, so the program cache never hits.
+            final List<List<String>> programs = new ArrayList<>();
+            for (int index = 0; index < BENCHMARK_PROGRAM_COUNT; index++) {
+                programs.add(generateProgram(new Random(i * BENCHMARK_PROGRAM_COUNT + index)));
+            }
+
+            final long regexStart = System.nanoTime();
+            for (final List<String> code : programs) {
+                RegexCompiler.compile(code);
+            }
+            final long regexEnd = System.nanoTime();
+
+            final long tokenizerStart = System.nanoTime();
+            for (final List<String> code : programs) {
+                Compiler.compile(code, new MachineState());
+            }
+            final long tokenizerEnd = System.nanoTime();
+
+            if (i >= WARMUP_COUNT) {
+                regexTime += regexEnd - regexStart;
+                tokenizerTime += tokenizerEnd - tokenizerStart;
+            }
+        }
+
+        final int count = REPEAT_COUNT * BENCHMARK_PROGRAM_COUNT;
+        System.out.printf("lines=%d regex=%.3fms tokenizer=%.3fms%n",
+                MAX_LINES, regexTime / 1e6 / count, tokenizerTime / 1e6 / count);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void assertSameResult(final List<String> code, final LineCache cache) {
+        String expected;
+        try {
+            expected = describe(RegexCompiler.compile(code));
+        } catch (final ParseException e) {
+            expected = e.toString();
+        }
+
+        String actual;
+        try {
+            final MachineState state = new MachineState();
+            Compiler.compile(code, state, cache);
+            actual = describe(state.program);
+        } catch (final ParseException e) {
+            actual = e.toString();
+        }
+
+        assertEquals(code.toString(), expected, actual);
+    }
+
+    private static String describe(final Program program) {
+        return program.instructions + " " + new TreeMap<>(program.labels) + " " + new TreeMap<>(program.lineNumbers);
+    }
+
+    /**
+     * Generate a program of the maximum length with labels, comments and
+     * jumps, as a player might write it.
+     */
+    private static List<String> generateProgram(final Random random) {
+        final List<String> code = new ArrayList<>(MAX_LINES);
+        for (int line = 0; line < MAX_LINES; line++) {
+            final String label = line % 4 == 0 ? "L" + line + ": " : "";
+            final String instruction = String.format(BENCHMARK_INSTRUCTIONS[random.nextInt(BENCHMARK_INSTRUCTIONS.length)], line & ~3);
+            final String comment = random.nextInt(5) == 0 ? " # STEP " + line : "";
+            code.add(label + instruction + comment);
+        }
+        return code;
+    }
+}
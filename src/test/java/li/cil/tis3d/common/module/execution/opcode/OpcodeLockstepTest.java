@@ -0,0 +1,532 @@
+package li.cil.tis3d.common.module.execution.opcode;
+
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.Settings;
+import li.cil.tis3d.common.module.execution.Machine;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.module.execution.compiler.Compiler;
+import li.cil.tis3d.common.module.execution.compiler.ParseException;
+import li.cil.tis3d.common.module.execution.instruction.Instruction;
+import li.cil.tis3d.common.module.execution.target.Target;
+import li.cil.tis3d.common.module.execution.target.TargetInterface;
+import li.cil.tis3d.common.module.execution.target.TargetInterfaceAcc;
+import li.cil.tis3d.common.module.execution.target.TargetInterfaceBak;
+import li.cil.tis3d.common.module.execution.target.TargetInterfaceNil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs random programs on the {@link Instruction}s, the {@link OpcodeInterpreter}
+ * and the {@link CompiledProgram} in lockstep, and checks they behave exactly
+ * the same, step for step.
+ * <p>
+ * Ports are simulated by pipes that randomly offer data and randomly accept
+ * pending writes, the latter notifying the machine like a reading module
+ * would. All pipe operations are logged, so the traffic can be compared.
+ */
+public class OpcodeLockstepTest {
+    private static final int PROGRAM_COUNT = 3000;
+    private static final int STEP_COUNT = 200;
+
+    private static final String[] OPERATIONS = {"MOV", "ADD", "SUB", "AND", "OR", "XOR", "SHL", "SHR", "JRO", "NOP", "SWP", "SAV", "NEG", "NOT", "JEZ", "JNZ", "JGZ", "JLZ", "JMP"};
+    private static final String[] SOURCES = {"LEFT", "RIGHT", "UP", "DOWN", "ANY", "LAST", "ACC", "NIL", "1", "-1", "0", "7", "200", "-999", "40000"};
+    private static final String[] DESTINATIONS = {"LEFT", "RIGHT", "UP", "DOWN", "ANY", "LAST", "ACC", "NIL"};
+
+    private boolean useOpcodeInterpreter;
+    private int opcodeCompilerThreshold;
+
+    @Before
+    public void setUp() {
+        useOpcodeInterpreter = Settings.useOpcodeInterpreter;
+        opcodeCompilerThreshold = Settings.opcodeCompilerThreshold;
+
+        // Executors are driven directly, make sure programs are not compiled
+        // behind the interpreter's back.
+        Settings.opcodeCompilerThreshold = 0;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.useOpcodeInterpreter = useOpcodeInterpreter;
+        Settings.opcodeCompilerThreshold = opcodeCompilerThreshold;
+    }
+
+    @Test
+    public void executorsBehaveIdentically() {
+        final Random random = new Random(0);
+        int programs = 0;
+        for (int seed = 0; seed < PROGRAM_COUNT; seed++) {
+            final List<String> code = generateProgram(random);
+            final List<Executor> executors;
+            try {
+                executors = Arrays.asList(
+                        new InstructionExecutor(code),
+                        new InterpreterExecutor(code),
+                        new CompiledExecutor(code));
+            } catch (final ParseException e) {
+                continue;
+            }
+            programs++;
+
+            for (int step = 0; step < STEP_COUNT; step++) {
+                simulatePipes(random, executors);
+                executors.forEach(Executor::step);
+                assertSameBehavior(code, step, executors);
+            }
+        }
+
+        assertTrue("Too few valid programs generated.", programs > PROGRAM_COUNT / 2);
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static List<String> generateProgram(final Random random) {
+        final int length = 1 + random.nextInt(10);
+        final List<String> code = new ArrayList<>(length);
+        for (int line = 0; line < length; line++) {
+            final String operation = OPERATIONS[random.nextInt(OPERATIONS.length)];
+            final String label = "L" + line + ": ";
+            switch (operation) {
+                case "MOV":
+                    code.add(label + "MOV " + pick(random, SOURCES) + " " + pick(random, DESTINATIONS));
+                    break;
+                case "JRO":
+                    code.add(label + "JRO " + (random.nextBoolean() ? pick(random, SOURCES) : String.valueOf(random.nextInt(7) - 3)));
+                    break;
+                case "ADD":
+                case "SUB":
+                case "AND":
+                case "OR":
+                case "XOR":
+                case "SHL":
+                case "SHR":
+                    code.add(label + operation + " " + pick(random, SOURCES));
+                    break;
+                case "JEZ":
+                case "JNZ":
+                case "JGZ":
+                case "JLZ":
+                case "JMP":
+                    code.add(label + operation + " L" + random.nextInt(length));
+                    break;
+                default:
+                    code.add(label + operation);
+            }
+        }
+        return code;
+    }
+
+    private static String pick(final Random random, final String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Randomly offer data on ports and accept pending writes, the same way
+     * for all executors.
+     */
+    private static void simulatePipes(final Random random, final List<Executor> executors) {
+        for (final Port port : Port.VALUES) {
+            if (random.nextInt(3) == 0) {
+                final int value = random.nextInt(0x10000) + Short.MIN_VALUE;
+                executors.forEach(executor -> executor.machine.pipes[port.ordinal()].offer(value));
+            }
+        }
+        for (final Port port : Port.VALUES) {
+            if (random.nextInt(3) == 0) {
+                executors.forEach(executor -> executor.acceptWrite(port));
+            }
+        }
+    }
+
+    private static void assertSameBehavior(final List<String> code, final int step, final List<Executor> executors) {
+        final Executor expected = executors.get(0);
+        for (final Executor actual : executors.subList(1, executors.size())) {
+            final String message = actual.getClass().getSimpleName() + " at step " + step + " of\n" + String.join("\n", code) + "\n";
+            assertEquals(message + "pc", expected.state.pc, actual.state.pc);
+            assertEquals(message + "acc", expected.state.acc, actual.state.acc);
+            assertEquals(message + "bak", expected.state.bak, actual.state.bak);
+            assertEquals(message + "last", expected.state.last, actual.state.last);
+            assertEquals(message + "isWriteCompleted", expected.state.isWriteCompleted, actual.state.isWriteCompleted);
+            assertEquals(message + "pipe traffic", expected.machine.log.toString(), actual.machine.log.toString());
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static abstract class Executor {
+        final TestMachine machine = new TestMachine();
+        final MachineState state = machine.getState();
+
+        Executor(final List<String> code) throws ParseException {
+            Compiler.compile(code, state);
+        }
+
+        abstract void step();
+
+        abstract void onWriteCompleted(final Port port);
+
+        /**
+         * Let a module on the other side read a pending write on the specified
+         * port, like {@link li.cil.tis3d.common.machine.PipeImpl#read()} does.
+         */
+        void acceptWrite(final Port port) {
+            if (machine.pipes[port.ordinal()].accept()) {
+                onWriteCompleted(port);
+            }
+        }
+
+        boolean isPcInBounds() {
+            return state.pc >= 0 && state.pc < state.program.instructions.size();
+        }
+    }
+
+    private static final class InstructionExecutor extends Executor {
+        InstructionExecutor(final List<String> code) throws ParseException {
+            super(code);
+        }
+
+        @Override
+        void step() {
+            if (isPcInBounds()) {
+                state.program.instructions.get(state.pc).step(machine);
+            }
+            state.validate();
+        }
+
+        @Override
+        void onWriteCompleted(final Port port) {
+            if (isPcInBounds()) {
+                state.program.instructions.get(state.pc).onWriteCompleted(machine, port);
+            }
+        }
+    }
+
+    private static class InterpreterExecutor extends Executor {
+        final OpcodeInterpreter interpreter = new OpcodeInterpreter(machine);
+
+        InterpreterExecutor(final List<String> code) throws ParseException {
+            super(code);
+        }
+
+        @Override
+        void step() {
+            interpreter.step();
+            state.validate();
+        }
+
+        @Override
+        void onWriteCompleted(final Port port) {
+            interpreter.onWriteCompleted(port);
+        }
+    }
+
+    private static final class CompiledExecutor extends InterpreterExecutor {
+        final CompiledProgram compiled;
+
+        CompiledExecutor(final List<String> code) throws ParseException {
+            super(code);
+            compiled = OpcodeCompiler.compile(state.program.opcodes);
+            assertNotNull("Failed compiling program.", compiled);
+        }
+
+        @Override
+        void step() {
+            if (isPcInBounds()) {
+                compiled.step(machine, state);
+            }
+            state.validate();
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Machine with simulated pipes on its ports, logging all operations on them.
+     */
+    private static final class TestMachine implements Machine {
+        final MachineState state = new MachineState();
+        final StringBuilder log = new StringBuilder();
+        final TestPipe[] pipes = new TestPipe[Port.VALUES.length];
+        final TargetInterface[] interfaces = new TargetInterface[Target.VALUES.length];
+
+        TestMachine() {
+            for (final Port port : Port.VALUES) {
+                pipes[port.ordinal()] = new TestPipe(port, log);
+            }
+            interfaces[Target.ACC.ordinal()] = new TargetInterfaceAcc(this);
+            interfaces[Target.BAK.ordinal()] = new TargetInterfaceBak(this);
+            interfaces[Target.NIL.ordinal()] = new TargetInterfaceNil(this);
+            for (final Port port : Port.VALUES) {
+                interfaces[Target.fromPort(port).ordinal()] = new TestInterfaceSide(pipes[port.ordinal()]);
+            }
+            interfaces[Target.ANY.ordinal()] = new TestInterfaceAny(this);
+            interfaces[Target.LAST.ordinal()] = new TestInterfaceLast(this);
+        }
+
+        @Override
+        public MachineState getState() {
+            return state;
+        }
+
+        @Override
+        public TargetInterface getInterface(final Target target) {
+            return interfaces[target.ordinal()];
+        }
+    }
+
+    /**
+     * Simplified pipe, with data offered and writes accepted by the test.
+     */
+    private static final class TestPipe {
+        private final Port port;
+        private final StringBuilder log;
+        boolean isWriting, isReading, hasData;
+        int value;
+
+        TestPipe(final Port port, final StringBuilder log) {
+            this.port = port;
+            this.log = log;
+        }
+
+        void offer(final int value) {
+            if (!hasData) {
+                hasData = true;
+                this.value = value;
+            }
+        }
+
+        boolean accept() {
+            if (!isWriting) {
+                return false;
+            }
+            isWriting = false;
+            log.append("accepted ").append(port).append('\n');
+            return true;
+        }
+
+        void beginWrite(final int value) {
+            if (isWriting) {
+                throw new IllegalStateException("Trying to write to a busy pipe.");
+            }
+            isWriting = true;
+            log.append("write ").append(port).append(' ').append(value).append('\n');
+        }
+
+        void cancelWrite() {
+            if (isWriting) {
+                log.append("cancel write ").append(port).append('\n');
+            }
+            isWriting = false;
+        }
+
+        void beginRead() {
+            if (isReading) {
+                throw new IllegalStateException("Trying to read from a busy pipe.");
+            }
+            isReading = true;
+            log.append("read ").append(port).append('\n');
+        }
+
+        void cancelRead() {
+            if (isReading) {
+                log.append("cancel read ").append(port).append('\n');
+            }
+            isReading = false;
+        }
+
+        boolean canTransfer() {
+            return isReading && hasData;
+        }
+
+        int read() {
+            if (!canTransfer()) {
+                throw new IllegalStateException("No data to read.");
+            }
+            isReading = false;
+            hasData = false;
+            log.append("transfer ").append(port).append(' ').append(value).append('\n');
+            return value;
+        }
+    }
+
+    private static final class TestInterfaceSide implements TargetInterface {
+        private final TestPipe pipe;
+
+        TestInterfaceSide(final TestPipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public boolean beginWrite(final int value) {
+            pipe.beginWrite(value);
+            return false;
+        }
+
+        @Override
+        public void cancelWrite() {
+            pipe.cancelWrite();
+        }
+
+        @Override
+        public boolean isWriting() {
+            return pipe.isWriting;
+        }
+
+        @Override
+        public void beginRead() {
+            pipe.beginRead();
+        }
+
+        @Override
+        public boolean isReading() {
+            return pipe.isReading;
+        }
+
+        @Override
+        public boolean canTransfer() {
+            return pipe.canTransfer();
+        }
+
+        @Override
+        public int read() {
+            return pipe.read();
+        }
+    }
+
+    /**
+     * Mirrors {@link li.cil.tis3d.common.module.execution.target.TargetInterfaceAny}.
+     */
+    private static final class TestInterfaceAny implements TargetInterface {
+        private final TestMachine machine;
+
+        TestInterfaceAny(final TestMachine machine) {
+            this.machine = machine;
+        }
+
+        @Override
+        public boolean beginWrite(final int value) {
+            for (final TestPipe pipe : machine.pipes) {
+                if (!pipe.isWriting) {
+                    pipe.beginWrite(value);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void cancelWrite() {
+            for (final TestPipe pipe : machine.pipes) {
+                pipe.cancelWrite();
+            }
+        }
+
+        @Override
+        public boolean isWriting() {
+            return Arrays.stream(machine.pipes).allMatch(pipe -> pipe.isWriting);
+        }
+
+        @Override
+        public void beginRead() {
+            for (final TestPipe pipe : machine.pipes) {
+                if (!pipe.isReading) {
+                    pipe.beginRead();
+                }
+            }
+        }
+
+        @Override
+        public boolean isReading() {
+            return Arrays.stream(machine.pipes).allMatch(pipe -> pipe.isReading);
+        }
+
+        @Override
+        public boolean canTransfer() {
+            return Arrays.stream(machine.pipes).anyMatch(TestPipe::canTransfer);
+        }
+
+        @Override
+        public int read() {
+            for (final Port port : Port.VALUES) {
+                final TestPipe pipe = machine.pipes[port.ordinal()];
+                if (pipe.canTransfer()) {
+                    for (final TestPipe otherPipe : machine.pipes) {
+                        if (otherPipe != pipe) {
+                            otherPipe.cancelRead();
+                        }
+                    }
+                    machine.state.last = Optional.of(port);
+                    return pipe.read();
+                }
+            }
+            throw new IllegalStateException("No data to read.");
+        }
+
+        @Override
+        public void onWriteComplete(final Port port) {
+            cancelWrite();
+            machine.state.last = Optional.of(port);
+        }
+    }
+
+    /**
+     * Mirrors {@link li.cil.tis3d.common.module.execution.target.TargetInterfaceLast}.
+     */
+    private static final class TestInterfaceLast implements TargetInterface {
+        private final TestMachine machine;
+
+        TestInterfaceLast(final TestMachine machine) {
+            this.machine = machine;
+        }
+
+        private Optional<TestPipe> getPipe() {
+            return machine.state.last.map(port -> machine.pipes[port.ordinal()]);
+        }
+
+        @Override
+        public boolean beginWrite(final int value) {
+            getPipe().ifPresent(pipe -> pipe.beginWrite(value));
+            return !getPipe().isPresent();
+        }
+
+        @Override
+        public void cancelWrite() {
+            getPipe().ifPresent(TestPipe::cancelWrite);
+        }
+
+        @Override
+        public boolean isWriting() {
+            return getPipe().map(pipe -> pipe.isWriting).orElse(false);
+        }
+
+        @Override
+        public void beginRead() {
+            getPipe().ifPresent(TestPipe::beginRead);
+        }
+
+        @Override
+        public boolean isReading() {
+            return getPipe().map(pipe -> pipe.isReading).orElse(false);
+        }
+
+        @Override
+        public boolean canTransfer() {
+            return getPipe().map(TestPipe::canTransfer).orElse(true);
+        }
+
+        @Override
+        public int read() {
+            return getPipe().map(TestPipe::read).orElse(0);
+        }
+    }
+}
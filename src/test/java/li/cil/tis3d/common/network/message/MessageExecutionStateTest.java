@@ -0,0 +1,122 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import li.cil.tis3d.api.machine.Casing;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.common.module.execution.MachineState;
+import li.cil.tis3d.common.tile.TestWorld;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.BlockPos;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the size of {@link MessageExecutionState}s compared to the module
+ * data messages execution modules used to send their state with, and that
+ * edge values survive being sent.
+ */
+public class MessageExecutionStateTest {
+    /**
+     * The number of states of the execution module, see <tt>ModuleExecution.State</tt>.
+     */
+    private static final int STATE_COUNT = 4;
+
+    /**
+     * The ordinal of <tt>ModuleExecution.State.RUN</tt>.
+     */
+    private static final int STATE_RUN = 2;
+
+    /**
+     * Face, last port and state byte, program counter byte, two shorts.
+     */
+    private static final int COMPACT_SIZE = 6;
+
+    /**
+     * Face, then the NBT tag with "full", "pc", "acc", "bak", "last" set to
+     * <tt>LEFT</tt> and "state" set to <tt>RUN</tt>.
+     */
+    private static final int NBT_SIZE = 68;
+
+    private static final int[] PC_VALUES = {0, 1, 198, 199};
+    private static final int[] REGISTER_VALUES = {0, 1, -1, 32767, -32767, -32768};
+
+    private Casing casing;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+    }
+
+    @Before
+    public void setUp() {
+        final TestWorld world = new TestWorld();
+        casing = world.place(new TileEntityCasing(), new BlockPos(1, 2, 3)).getCasing();
+    }
+
+    @Test
+    public void compactStateSize() {
+        final NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setBoolean("full", false);
+        nbt.setInteger(MachineState.TAG_PC, 199);
+        nbt.setInteger(MachineState.TAG_ACC, -32768);
+        nbt.setInteger(MachineState.TAG_BAK, 32767);
+        nbt.setString(MachineState.TAG_LAST, Port.LEFT.name());
+        nbt.setString("state", "RUN");
+        final ByteBuf nbtBuf = Unpooled.buffer();
+        new MessageModuleData(casing, Face.Y_NEG, nbt).toModuleBytes(nbtBuf);
+
+        final ByteBuf compactBuf = Unpooled.buffer();
+        new MessageExecutionState(casing, Face.Y_NEG, 199, -32768, 32767, Optional.of(Port.LEFT), STATE_RUN).toModuleBytes(compactBuf);
+
+        assertEquals(NBT_SIZE, nbtBuf.readableBytes());
+        assertEquals(COMPACT_SIZE, compactBuf.readableBytes());
+    }
+
+    @Test
+    public void edgeValuesRoundTrip() {
+        final List<Optional<Port>> lastValues = new ArrayList<>();
+        lastValues.add(Optional.empty());
+        for (final Port port : Port.VALUES) {
+            lastValues.add(Optional.of(port));
+        }
+
+        for (final Face face : Face.VALUES) {
+            for (final int pc : PC_VALUES) {
+                for (final int acc : REGISTER_VALUES) {
+                    for (final int bak : REGISTER_VALUES) {
+                        for (final Optional<Port> last : lastValues) {
+                            for (int state = 0; state < STATE_COUNT; state++) {
+                                final MessageExecutionState message = new MessageExecutionState(casing, face, pc, acc, bak, last, state);
+                                final ByteBuf buf = Unpooled.buffer();
+                                message.toBytes(buf);
+
+                                final MessageExecutionState received = new MessageExecutionState();
+                                received.fromBytes(buf);
+
+                                final String values = face + ", " + pc + ", " + acc + ", " + bak + ", " + last + ", " + state;
+                                assertEquals(values, 0, buf.readableBytes());
+                                assertEquals(values, casing.getPosition(), received.getPosition());
+                                assertEquals(values, face, received.getFace());
+                                assertEquals(values, pc, received.getPc());
+                                assertEquals(values, acc, received.getAcc());
+                                assertEquals(values, bak, received.getBak());
+                                assertEquals(values, last, received.getLast());
+                                assertEquals(values, state, received.getState());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
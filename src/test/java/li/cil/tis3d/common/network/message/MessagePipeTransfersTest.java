@@ -0,0 +1,124 @@
+package li.cil.tis3d.common.network.message;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import li.cil.tis3d.api.machine.Face;
+import li.cil.tis3d.api.machine.Pipe;
+import li.cil.tis3d.api.machine.Port;
+import li.cil.tis3d.api.prefab.AbstractModule;
+import li.cil.tis3d.common.tile.TestWorld;
+import li.cil.tis3d.common.tile.TileEntityCasing;
+import net.minecraft.util.BlockPos;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the number of reads per pipe taken from casings survives being sent
+ * in a {@link MessagePipeTransfers}, including pipes read from multiple times
+ * in a tick.
+ */
+public class MessagePipeTransfersTest {
+    private static final int PIPE_COUNT = Face.VALUES.length * Port.VALUES.length;
+
+    private TestWorld world;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+    }
+
+    @Before
+    public void setUp() {
+        world = new TestWorld();
+    }
+
+    @Test
+    public void transfersRoundTrip() {
+        final TileEntityCasing first = createCasing(new BlockPos(1, 2, 3));
+        final TileEntityCasing second = createCasing(new BlockPos(-4, 5, -6));
+
+        // Three reads of one pipe, one of another, within the same tick.
+        transfer(first, first.getReceivingPipe(Face.Y_NEG, Port.UP), 3);
+        transfer(first, first.getReceivingPipe(Face.X_POS, Port.LEFT), 1);
+        transfer(second, second.getReceivingPipe(Face.Z_NEG, Port.DOWN), 2);
+
+        final int[] firstTransfers = first.takePipeTransfers();
+        final int[] secondTransfers = second.takePipeTransfers();
+        assertEquals(4, Arrays.stream(firstTransfers).sum());
+        assertEquals(3, Arrays.stream(firstTransfers).max().getAsInt());
+        assertEquals(2, Arrays.stream(secondTransfers).sum());
+
+        // Taking them forgets them.
+        assertNull(first.takePipeTransfers());
+
+        assertRoundTrip(Arrays.asList(first.getPos(), second.getPos()), Arrays.asList(firstTransfers, secondTransfers));
+    }
+
+    @Test
+    public void edgeCountsRoundTrip() {
+        // All pipes, counts needing multiple varint bytes, and no pipes.
+        final int[] all = new int[PIPE_COUNT];
+        for (int index = 0; index < PIPE_COUNT; index++) {
+            all[index] = index * 1000 + 1;
+        }
+        final int[] last = new int[PIPE_COUNT];
+        last[PIPE_COUNT - 1] = Integer.MAX_VALUE;
+        final int[] none = new int[PIPE_COUNT];
+
+        assertRoundTrip(Arrays.asList(new BlockPos(0, 0, 0), new BlockPos(1, 255, -1), new BlockPos(-30000000, 0, 30000000)),
+                Arrays.asList(all, last, none));
+        assertRoundTrip(Collections.emptyList(), Collections.emptyList());
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private TileEntityCasing createCasing(final BlockPos pos) {
+        final TileEntityCasing casing = world.place(new TileEntityCasing(), pos);
+        // Modules on all faces, notified when their writes were read.
+        for (final Face face : Face.VALUES) {
+            casing.setModule(face, new AbstractModule(casing.getCasing(), face) {
+            });
+        }
+        return casing;
+    }
+
+    /**
+     * Write to and read from the specified pipe the specified number of times.
+     */
+    private static void transfer(final TileEntityCasing casing, final Pipe pipe, final int count) {
+        for (int i = 0; i < count; i++) {
+            pipe.beginWrite(i);
+            pipe.beginRead();
+            while (!pipe.canTransfer()) {
+                casing.stepPipes();
+            }
+            assertEquals(i, pipe.read());
+        }
+    }
+
+    private void assertRoundTrip(final List<BlockPos> positions, final List<int[]> transfers) {
+        final ByteBuf buf = Unpooled.buffer();
+        new MessagePipeTransfers(world, positions, transfers).toBytes(buf);
+
+        final MessagePipeTransfers message = new MessagePipeTransfers();
+        message.fromBytes(buf);
+        assertEquals(0, buf.readableBytes());
+
+        assertEquals(world.provider.getDimensionId(), message.getDimension());
+        assertEquals(positions, message.getPositions());
+        assertEquals(transfers.size(), message.getTransfers().size());
+        for (int casing = 0; casing < transfers.size(); casing++) {
+            assertArrayEquals(transfers.get(casing), message.getTransfers().get(casing));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package li.cil.tis3d.common.tile;
+
+import li.cil.tis3d.common.network.Network;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.BlockPos;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+import net.minecraftforge.fml.common.network.NetworkRegistry;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A minimal server world for testing multi-blocks without a running server.
+ * <p>
+ * Tile entities live in a map instead of chunks, all blocks are loaded and
+ * receive the same redstone power. Network messages are dropped, unless a
+ * listener is set via {@link #setMessageListener(Consumer)}.
+ */
+public class TestWorld extends World {
+    private static Consumer<IMessage> messageListener = message -> {
+    };
+
+    private final Map<BlockPos, TileEntity> tileEntities = new HashMap<>();
+    private int power = 15;
+
+    public TestWorld() {
+        super(null, new WorldInfo(new WorldSettings(0, WorldSettings.GameType.SURVIVAL, false, false, WorldType.DEFAULT), "test"), new WorldProviderSurface(), new Profiler(), false);
+    }
+
+    /**
+     * Prepare the environment for using test worlds. Must be called once
+     * before creating any test world.
+     */
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        Bootstrap.register();
+
+        final Field wrapper = Network.class.getDeclaredField("wrapper");
+        wrapper.setAccessible(true);
+        wrapper.set(null, new SimpleNetworkWrapper("tis3d-test") {
+            @Override
+            public void sendToAll(final IMessage message) {
+                messageListener.accept(message);
+            }
+
+            @Override
+            public void sendToAllAround(final IMessage message, final NetworkRegistry.TargetPoint point) {
+                messageListener.accept(message);
+            }
+
+            @Override
+            public void sendToDimension(final IMessage message, final int dimensionId) {
+                messageListener.accept(message);
+            }
+        });
+    }
+
+    /**
+     * Set the listener called for each network message sent by the server.
+     *
+     * @param listener the listener to call, or <tt>null</tt> to drop messages.
+     */
+    public static void setMessageListener(final Consumer<IMessage> listener) {
+        messageListener = listener != null ? listener : message -> {
+        };
+    }
+
+    // --------------------------------------------------------------------- //
+
+    /**
+     * Place the specified tile entity at the specified position.
+     *
+     * @param tileEntity the tile entity to place.
+     * @param pos        the position to place it at.
+     * @param <T>        the type of the tile entity.
+     * @return the placed tile entity.
+     */
+    public <T extends TileEntity> T place(final T tileEntity, final BlockPos pos) {
+        tileEntity.setWorldObj(this);
+        tileEntity.setPos(pos);
+        tileEntities.put(pos, tileEntity);
+        return tileEntity;
+    }
+
+    /**
+     * Remove the tile entity at the specified position.
+     *
+     * @param pos the position to remove the tile entity from.
+     */
+    public void remove(final BlockPos pos) {
+        final TileEntity tileEntity = tileEntities.remove(pos);
+        if (tileEntity != null) {
+            tileEntity.invalidate();
+        }
+    }
+
+    /**
+     * Set the redstone power all blocks in the world receive.
+     *
+     * @param value the new redstone power.
+     */
+    public void setPower(final int value) {
+        power = value;
+    }
+
+    /**
+     * Notify casings adjacent to the specified position of a change, like
+     * a block update would.
+     *
+     * @param pos the position that changed.
+     */
+    public void notifyNeighbors(final BlockPos pos) {
+        for (final EnumFacing facing : EnumFacing.VALUES) {
+            final TileEntity neighbor = tileEntities.get(pos.offset(facing));
+            if (neighbor instanceof TileEntityCasing) {
+                ((TileEntityCasing) neighbor).checkNeighbors();
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+    // World
+
+    @Override
+    protected IChunkProvider createChunkProvider() {
+        return null;
+    }
+
+    @Override
+    protected int getRenderDistanceChunks() {
+        return 0;
+    }
+
+    @Override
+    public boolean isBlockLoaded(final BlockPos pos) {
+        return true;
+    }
+
+    @Override
+    public TileEntity getTileEntity(final BlockPos pos) {
+        return tileEntities.get(pos);
+    }
+
+    @Override
+    public IBlockState getBlockState(final BlockPos pos) {
+        return Blocks.air.getDefaultState();
+    }
+
+    @Override
+    public void markChunkDirty(final BlockPos pos, final TileEntity tileEntity) {
+    }
+
+    @Override
+    public int getRedstonePower(final BlockPos pos, final EnumFacing facing) {
+        return power;
+    }
+
+    @Override
+    public boolean isBlockPowered(final BlockPos pos) {
+        return power > 0;
+    }
+}
@@ -0,0 +1,150 @@
+package li.cil.tis3d.common.tile;
+
+import li.cil.tis3d.common.Settings;
+import net.minecraft.util.BlockPos;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Builds machines of 512, 4096 and 16384 casings and checks scanning,
+ * stepping, attaching and detaching casings works at that size, reporting
+ * the average time each of these took.
+ * <p>
+ * Detaching removes a casing connecting a second casing to the machine, so
+ * the disconnected casing has to be found and removed as well.
+ */
+public class TileEntityControllerStressTest {
+    private static final int[][] DIMENSIONS = {{8, 8, 8}, {16, 16, 16}, {32, 16, 32}};
+    private static final int WARMUP_COUNT = 3;
+    private static final int REPEAT_COUNT = 10;
+    private static final int UPDATE_COUNT = 3;
+
+    private int maxCasingsPerController;
+    private boolean linkCasingPipes;
+
+    @BeforeClass
+    public static void setUpEnvironment() throws ReflectiveOperationException {
+        TestWorld.setUpEnvironment();
+    }
+
+    @Before
+    public void setUp() {
+        maxCasingsPerController = Settings.maxCasingsPerController;
+        linkCasingPipes = Settings.linkCasingPipes;
+    }
+
+    @After
+    public void tearDown() {
+        Settings.maxCasingsPerController = maxCasingsPerController;
+        Settings.linkCasingPipes = linkCasingPipes;
+    }
+
+    @Test
+    public void largeMachinesWithRelays() {
+        Settings.linkCasingPipes = false;
+        for (final int[] dimension : DIMENSIONS) {
+            stress(dimension);
+        }
+    }
+
+    @Test
+    public void largeMachinesWithLinkedPipes() {
+        Settings.linkCasingPipes = true;
+        for (final int[] dimension : DIMENSIONS) {
+            stress(dimension);
+        }
+    }
+
+    // --------------------------------------------------------------------- //
+
+    private static void stress(final int[] dimension) {
+        final int count = dimension[0] * dimension[1] * dimension[2];
+        Settings.maxCasingsPerController = count + 2;
+
+        final TestWorld world = new TestWorld();
+        final TileEntityController controller = world.place(new TileEntityController(), new BlockPos(0, 0, 0));
+        final List<TileEntityCasing> casings = new ArrayList<>();
+        for (int x = 0; x < dimension[0]; x++) {
+            for (int y = 0; y < dimension[1]; y++) {
+                for (int z = 0; z < dimension[2]; z++) {
+                    casings.add(world.place(new TileEntityCasing(), new BlockPos(x + 1, y, z)));
+                }
+            }
+        }
+
+        // A casing sticking out of the machine, and one only connected to it.
+        final BlockPos bridgePos = new BlockPos(dimension[0] + 1, 0, 0);
+        final BlockPos tailPos = new BlockPos(dimension[0] + 2, 0, 0);
+
+        long scanTime = 0, stepTime = 0, attachTime = 0, detachTime = 0;
+        for (int i = 0; i < WARMUP_COUNT + REPEAT_COUNT; i++) {
+            world.setPower(0);
+            controller.update();
+            controller.scheduleScan();
+
+            final long scanStart = System.nanoTime();
+            controller.update();
+            final long scanEnd = System.nanoTime();
+
+            assertEquals(TileEntityController.ControllerState.READY, controller.getState());
+            assertSame(controller, casings.get(casings.size() - 1).getController());
+
+            world.setPower(15);
+            controller.update();
+            controller.update();
+            assertEquals(TileEntityController.ControllerState.RUNNING, controller.getState());
+
+            final long stepStart = System.nanoTime();
+            for (int j = 0; j < UPDATE_COUNT; j++) {
+                controller.update();
+            }
+            final long stepEnd = System.nanoTime();
+
+            final long attachStart = System.nanoTime();
+            final TileEntityCasing bridge = world.place(new TileEntityCasing(), bridgePos);
+            world.notifyNeighbors(bridgePos);
+            final TileEntityCasing tail = world.place(new TileEntityCasing(), tailPos);
+            world.notifyNeighbors(tailPos);
+            final long attachEnd = System.nanoTime();
+
+            assertSame(controller, bridge.getController());
+            assertSame(controller, tail.getController());
+
+            final long detachStart = System.nanoTime();
+            world.remove(bridgePos);
+            world.notifyNeighbors(bridgePos);
+            final long detachEnd = System.nanoTime();
+
+            assertNull(tail.getController());
+            assertEquals(TileEntityController.ControllerState.RUNNING, controller.getState());
+            world.remove(tailPos);
+            world.notifyNeighbors(tailPos);
+
+            if (i >= WARMUP_COUNT) {
+                scanTime += scanEnd - scanStart;
+                // Six steps per update, as all six sides are fully powered.
+                stepTime += (stepEnd - stepStart) / (UPDATE_COUNT * 6);
+                attachTime += attachEnd - attachStart;
+                detachTime += detachEnd - detachStart;
+            }
+        }
+
+        for (final TileEntityCasing casing : casings) {
+            assertSame(controller, casing.getController());
+        }
+
+        System.out.printf("%s casings=%d scan=%.2fms step=%.3fms attach=%.3fms detach=%.3fms%n",
+                Settings.linkCasingPipes ? "linked" : "relays", count,
+                scanTime / 1e6 / REPEAT_COUNT, stepTime / 1e6 / REPEAT_COUNT,
+                attachTime / 1e6 / REPEAT_COUNT, detachTime / 1e6 / REPEAT_COUNT);
+    }
+}